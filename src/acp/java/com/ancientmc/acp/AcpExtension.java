@@ -1,7 +1,10 @@
 package com.ancientmc.acp;
 
+import com.ancientmc.acp.tasks.ToolExec;
+import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 
 public class AcpExtension {
     /**
@@ -14,12 +17,113 @@ public class AcpExtension {
      */
     private final Property<String> data;
 
-    public AcpExtension(final Project project) {
+    /**
+     * The maximum number of files downloaded at once when fetching the asset index. Defaults to 8.
+     */
+    private final Property<Integer> downloadThreads;
+
+    /**
+     * How many hours the version manifest and ACP data are used before being revalidated with the server. Defaults to 24.
+     */
+    private final Property<Integer> refreshHours;
+
+    /**
+     * How the tools run: "fork", "in_process" or "pooled", see {@link ToolExec.Mode}. Defaults to the acp.toolMode
+     * project property, or "fork".
+     */
+    private final Property<String> toolMode;
+
+    /**
+     * Whether forked tools share class data archives, see {@link com.ancientmc.acp.util.ClassDataArchive}. Defaults to
+     * the acp.classDataSharing project property, or false.
+     */
+    private final Property<Boolean> classDataSharing;
+
+    /**
+     * Whether the JAR is split, patched, injected and deobfuscated by the single deobfuscate task, see
+     * {@link com.ancientmc.acp.tasks.DeobfuscateJar}, whose JARs are written to cfg/temp/fused/ instead. Defaults to the
+     * acp.fusedDeobfuscation project property, or false.
+     */
+    private final Property<Boolean> fusedDeobfuscation;
+
+    /**
+     * The number of shards the JAR is decompiled in concurrently, see {@link com.ancientmc.acp.tasks.DecompileJar}.
+     * Defaults to the acp.decompileShards project property, or 1.
+     */
+    private final Property<Integer> decompileShards;
+
+    /**
+     * Mirrors to download from instead of (or in front of) the upstream servers.
+     */
+    private final AcpMirrors mirrors;
+
+    /**
+     * The files and directories of the workspace.
+     */
+    private final AcpLayout layout;
+
+    public AcpExtension(final Project project, final String version) {
         this.project = project;
         this.data = project.getObjects().property(String.class);
+        this.downloadThreads = project.getObjects().property(Integer.class).convention(8);
+        this.refreshHours = project.getObjects().property(Integer.class).convention(24);
+        this.toolMode = project.getObjects().property(String.class)
+                .convention(project.getProviders().gradleProperty("acp.toolMode").orElse("fork"));
+        this.classDataSharing = project.getObjects().property(Boolean.class)
+                .convention(project.getProviders().gradleProperty("acp.classDataSharing").map(Boolean::parseBoolean).orElse(false));
+        this.fusedDeobfuscation = project.getObjects().property(Boolean.class)
+                .convention(project.getProviders().gradleProperty("acp.fusedDeobfuscation").map(Boolean::parseBoolean).orElse(false));
+        this.decompileShards = project.getObjects().property(Integer.class)
+                .convention(project.getProviders().gradleProperty("acp.decompileShards").map(Integer::parseInt).orElse(1));
+        this.mirrors = new AcpMirrors(project);
+        this.layout = new AcpLayout(project, version);
     }
 
     public Property<String> getData() {
         return this.data;
     }
+
+    public Property<Integer> getDownloadThreads() {
+        return this.downloadThreads;
+    }
+
+    public Property<Integer> getRefreshHours() {
+        return this.refreshHours;
+    }
+
+    public Property<String> getToolMode() {
+        return this.toolMode;
+    }
+
+    /**
+     * Gets the tool mode, parsed.
+     * @return The tool mode.
+     */
+    public Provider<ToolExec.Mode> getToolModeValue() {
+        return this.toolMode.map(ToolExec.Mode::parse);
+    }
+
+    public Property<Boolean> getClassDataSharing() {
+        return this.classDataSharing;
+    }
+
+    public Property<Boolean> getFusedDeobfuscation() {
+        return this.fusedDeobfuscation;
+    }
+
+    public Property<Integer> getDecompileShards() {
+        return this.decompileShards;
+    }
+
+    public AcpMirrors getMirrors() {
+        return this.mirrors;
+    }
+
+    public AcpLayout getLayout() {
+        return this.layout;
+    }
+
+    public void mirrors(Action<? super AcpMirrors> action) {
+        action.execute(this.mirrors);
+    }
 }
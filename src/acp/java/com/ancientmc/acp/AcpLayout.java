@@ -0,0 +1,287 @@
+package com.ancientmc.acp;
+
+import org.gradle.api.Project;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
+
+/**
+ * The files and directories of an ACP workspace, exposed through the extension as acp.layout:
+ * <pre>
+ * tasks.withType(JavaExec) {
+ *     systemProperty 'java.library.path', acp.layout.nativesDir.get().asFile
+ * }
+ * </pre>
+ * Each project gets its own layout, resolved against its own directory and Minecraft version, and none of the locations
+ * can be changed once created. Several workspaces (even of different versions) can therefore be configured and run in
+ * the same build.
+ */
+public class AcpLayout {
+    private final Project project;
+
+    private final DirectoryProperty cfgDir;
+    private final DirectoryProperty mappingsDir;
+    private final DirectoryProperty logsDir;
+    private final DirectoryProperty tempDir;
+    private final DirectoryProperty journalDir;
+    private final DirectoryProperty librariesDir;
+    private final DirectoryProperty toolsDir;
+    private final DirectoryProperty patchesDir;
+    private final DirectoryProperty modPatchesDir;
+    private final DirectoryProperty runDir;
+    private final DirectoryProperty nativesDir;
+    private final DirectoryProperty srcDir;
+    private final DirectoryProperty originalSrcDir;
+    private final DirectoryProperty resourcesDir;
+    private final DirectoryProperty originalClassesDir;
+    private final DirectoryProperty reobfClassesDir;
+    private final DirectoryProperty moddedClassesDir;
+    private final DirectoryProperty hashesDir;
+    private final RegularFileProperty acpData;
+    private final RegularFileProperty jarDependencies;
+    private final RegularFileProperty versionManifest;
+    private final RegularFileProperty json;
+    private final RegularFileProperty baseJar;
+    private final RegularFileProperty slimJar;
+    private final RegularFileProperty extraJar;
+    private final RegularFileProperty modLoaderJar;
+    private final RegularFileProperty srgJar;
+    private final RegularFileProperty fusedExtraJar;
+    private final RegularFileProperty fusedSrgJar;
+    private final RegularFileProperty injectJar;
+    private final RegularFileProperty finalJar;
+    private final RegularFileProperty intermJar;
+    private final RegularFileProperty reobfJar;
+    private final RegularFileProperty srg;
+    private final RegularFileProperty reobfSrg;
+
+    /**
+     * @param project The gradle project.
+     * @param version The Minecraft version, since several files use it in their names.
+     */
+    public AcpLayout(final Project project, final String version) {
+        this.project = project;
+        this.cfgDir = dir("cfg/");
+        this.mappingsDir = dir("cfg/mappings/");
+        this.logsDir = dir("cfg/logs/");
+        this.tempDir = dir("cfg/temp/");
+        this.journalDir = dir("cfg/.journal/");
+        this.librariesDir = dir("cfg/temp/libraries/");
+        this.toolsDir = dir("cfg/temp/tools/");
+        this.patchesDir = dir("cfg/patches/");
+        this.modPatchesDir = dir("cfg/modpatches/");
+        this.runDir = dir("run/");
+        this.nativesDir = dir("run/bin/natives/");
+        this.srcDir = dir("src/main/java/");
+        this.originalSrcDir = dir("build/modding/originalSrc/");
+        this.resourcesDir = dir("src/main/resources/");
+        this.originalClassesDir = dir("build/modding/classes/original/");
+        this.reobfClassesDir = dir("build/modding/classes/reobf/");
+        this.moddedClassesDir = dir("build/classes/java/main/");
+        this.hashesDir = dir("build/modding/hashes/");
+        this.acpData = file("cfg/data.zip");
+        this.jarDependencies = file("cfg/jardep.json");
+        this.versionManifest = file("cfg/temp/version_manifest.json");
+        this.json = file("cfg/temp/" + version + ".json");
+        this.baseJar = file("cfg/temp/" + version + ".jar");
+        this.slimJar = file("cfg/temp/" + version + "-slim.jar");
+        this.extraJar = file("cfg/temp/" + version + "-extra.jar");
+        this.modLoaderJar = file("cfg/temp/" + version + "-mod.jar");
+        this.srgJar = file("cfg/temp/" + version + "-srg.jar");
+        this.fusedExtraJar = file("cfg/temp/fused/" + version + "-extra.jar");
+        this.fusedSrgJar = file("cfg/temp/fused/" + version + "-srg.jar");
+        this.injectJar = file("cfg/temp/" + version + "-inj.jar");
+        this.finalJar = file("cfg/temp/" + version + "-final.jar");
+        this.intermJar = file("build/libs/interm-" + version + ".jar");
+        this.reobfJar = file("build/libs/minecraft-" + version + ".jar");
+        this.srg = file("cfg/mappings/" + version + ".tsrg");
+        this.reobfSrg = file("build/modding/reobf.srg");
+    }
+
+    private DirectoryProperty dir(String path) {
+        DirectoryProperty property = project.getObjects().directoryProperty();
+        property.set(project.getLayout().getProjectDirectory().dir(path));
+        property.disallowChanges();
+        return property;
+    }
+
+    private RegularFileProperty file(String path) {
+        RegularFileProperty property = project.getObjects().fileProperty();
+        property.set(project.getLayout().getProjectDirectory().file(path));
+        property.disallowChanges();
+        return property;
+    }
+
+    /**
+     * Gets the absolute path of a location, for tool arguments.
+     * @param location The file or directory.
+     * @return Its path.
+     */
+    public static String path(Provider<? extends FileSystemLocation> location) {
+        return location.get().getAsFile().getAbsolutePath();
+    }
+
+    /**
+     * Gets a file within one of the directories.
+     * @param dir The directory.
+     * @param path The path of the file within the directory.
+     * @return Its path.
+     */
+    public static String path(Provider<Directory> dir, String path) {
+        return dir.get().file(path).getAsFile().getAbsolutePath();
+    }
+
+    public DirectoryProperty getCfgDir() {
+        return cfgDir;
+    }
+
+    public DirectoryProperty getMappingsDir() {
+        return mappingsDir;
+    }
+
+    public DirectoryProperty getLogsDir() {
+        return logsDir;
+    }
+
+    public DirectoryProperty getTempDir() {
+        return tempDir;
+    }
+
+    public DirectoryProperty getJournalDir() {
+        return journalDir;
+    }
+
+    /**
+     * The directory Minecraft's libraries are linked into, for the implementation configuration.
+     */
+    public DirectoryProperty getLibrariesDir() {
+        return librariesDir;
+    }
+
+    /**
+     * The directory the tools pinned in acp.lock.json are linked into, in a directory per tool configuration.
+     */
+    public DirectoryProperty getToolsDir() {
+        return toolsDir;
+    }
+
+    public DirectoryProperty getPatchesDir() {
+        return patchesDir;
+    }
+
+    public DirectoryProperty getModPatchesDir() {
+        return modPatchesDir;
+    }
+
+    public DirectoryProperty getRunDir() {
+        return runDir;
+    }
+
+    public DirectoryProperty getNativesDir() {
+        return nativesDir;
+    }
+
+    public DirectoryProperty getSrcDir() {
+        return srcDir;
+    }
+
+    public DirectoryProperty getOriginalSrcDir() {
+        return originalSrcDir;
+    }
+
+    public DirectoryProperty getResourcesDir() {
+        return resourcesDir;
+    }
+
+    public DirectoryProperty getOriginalClassesDir() {
+        return originalClassesDir;
+    }
+
+    public DirectoryProperty getReobfClassesDir() {
+        return reobfClassesDir;
+    }
+
+    public DirectoryProperty getModdedClassesDir() {
+        return moddedClassesDir;
+    }
+
+    public DirectoryProperty getHashesDir() {
+        return hashesDir;
+    }
+
+    public RegularFileProperty getAcpData() {
+        return acpData;
+    }
+
+    public RegularFileProperty getJarDependencies() {
+        return jarDependencies;
+    }
+
+    public RegularFileProperty getVersionManifest() {
+        return versionManifest;
+    }
+
+    public RegularFileProperty getJson() {
+        return json;
+    }
+
+    public RegularFileProperty getBaseJar() {
+        return baseJar;
+    }
+
+    public RegularFileProperty getSlimJar() {
+        return slimJar;
+    }
+
+    public RegularFileProperty getExtraJar() {
+        return extraJar;
+    }
+
+    public RegularFileProperty getModLoaderJar() {
+        return modLoaderJar;
+    }
+
+    public RegularFileProperty getSrgJar() {
+        return srgJar;
+    }
+
+    /**
+     * The extra JAR written by the fused deobfuscate task, which doesn't share its outputs with stripJar.
+     */
+    public RegularFileProperty getFusedExtraJar() {
+        return fusedExtraJar;
+    }
+
+    /**
+     * The deobfuscated JAR written by the fused deobfuscate task, which doesn't share its outputs with deobfJar.
+     */
+    public RegularFileProperty getFusedSrgJar() {
+        return fusedSrgJar;
+    }
+
+    public RegularFileProperty getInjectJar() {
+        return injectJar;
+    }
+
+    public RegularFileProperty getFinalJar() {
+        return finalJar;
+    }
+
+    public RegularFileProperty getIntermJar() {
+        return intermJar;
+    }
+
+    public RegularFileProperty getReobfJar() {
+        return reobfJar;
+    }
+
+    public RegularFileProperty getSrg() {
+        return srg;
+    }
+
+    public RegularFileProperty getReobfSrg() {
+        return reobfSrg;
+    }
+}
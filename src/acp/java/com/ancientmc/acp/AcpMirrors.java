@@ -0,0 +1,103 @@
+package com.ancientmc.acp;
+
+import com.ancientmc.acp.download.Mirrors;
+import org.gradle.api.Project;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Provider;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The mirrors block of the ACP extension. Each endpoint takes an ordered list of base locations, either HTTP URLs or
+ * file: URLs of local directories laid out like the upstream:
+ * <pre>
+ * acp {
+ *     mirrors {
+ *         meta 'http://mirror.lan/mojang-meta/'
+ *         assets 'file:///srv/minecraft/assets/objects/'
+ *     }
+ * }
+ * </pre>
+ * The upstream location is always kept as the last resort.
+ * @see Mirrors
+ */
+public class AcpMirrors {
+    /**
+     * Mirrors of the AncientMC maven (ACP data).
+     */
+    private final ListProperty<String> maven;
+    /**
+     * Mirrors of Mojang's metadata and game downloads (version manifest, version JSON, asset index, game JAR).
+     */
+    private final ListProperty<String> meta;
+    /**
+     * Mirrors of Mojang's asset objects.
+     */
+    private final ListProperty<String> assets;
+    /**
+     * Mirrors of Mojang's library repository (natives).
+     */
+    private final ListProperty<String> libraries;
+
+    /**
+     * The configured mirrors, as handed to downloads.
+     */
+    private final Provider<Mirrors> mirrors;
+
+    public AcpMirrors(final Project project) {
+        this.maven = project.getObjects().listProperty(String.class);
+        this.meta = project.getObjects().listProperty(String.class);
+        this.assets = project.getObjects().listProperty(String.class);
+        this.libraries = project.getObjects().listProperty(String.class);
+        this.mirrors = project.provider(() -> {
+            Map<String, List<String>> map = new LinkedHashMap<>();
+            map.put(Mirrors.MAVEN, maven.get());
+            map.put(Mirrors.META, meta.get());
+            map.put(Mirrors.ASSETS, assets.get());
+            map.put(Mirrors.LIBRARIES, libraries.get());
+            return new Mirrors(map);
+        });
+    }
+
+    public void maven(String... bases) {
+        maven.addAll(Arrays.asList(bases));
+    }
+
+    public void meta(String... bases) {
+        meta.addAll(Arrays.asList(bases));
+    }
+
+    public void assets(String... bases) {
+        assets.addAll(Arrays.asList(bases));
+    }
+
+    public void libraries(String... bases) {
+        libraries.addAll(Arrays.asList(bases));
+    }
+
+    public ListProperty<String> getMaven() {
+        return this.maven;
+    }
+
+    public ListProperty<String> getMeta() {
+        return this.meta;
+    }
+
+    public ListProperty<String> getAssets() {
+        return this.assets;
+    }
+
+    public ListProperty<String> getLibraries() {
+        return this.libraries;
+    }
+
+    /**
+     * @return The configured mirrors of every endpoint.
+     */
+    public Provider<Mirrors> getMirrors() {
+        return this.mirrors;
+    }
+}
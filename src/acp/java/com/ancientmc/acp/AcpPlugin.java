@@ -1,49 +1,91 @@
 package com.ancientmc.acp;
 
-import com.ancientmc.acp.init.AcpInitializer;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.init.step.ResolveLibrariesStep;
+import com.ancientmc.acp.init.step.ResolveToolsStep;
+import com.ancientmc.acp.tasks.DecompileJar;
+import com.ancientmc.acp.tasks.DeobfuscateJar;
+import com.ancientmc.acp.tasks.DownloadAcpData;
+import com.ancientmc.acp.tasks.DownloadAssets;
+import com.ancientmc.acp.tasks.DownloadClientJar;
+import com.ancientmc.acp.tasks.DownloadVersionJson;
+import com.ancientmc.acp.tasks.ExtractNatives;
 import com.ancientmc.acp.tasks.InjectModPatches;
+import com.ancientmc.acp.tasks.LockAcpDependencies;
 import com.ancientmc.acp.tasks.MakeHashes;
+import com.ancientmc.acp.tasks.PrefetchAcpDependencies;
 import com.ancientmc.acp.tasks.RepackageDefaults;
-import com.ancientmc.acp.util.Paths;
+import com.ancientmc.acp.tasks.ResolveAcpLibraries;
+import com.ancientmc.acp.tasks.ResolveAcpTools;
+import com.ancientmc.acp.tasks.ToolExec;
+import com.ancientmc.acp.util.DependencyLock;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.Util;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.StartParameter;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Copy;
 import org.gradle.api.tasks.JavaExec;
 import org.gradle.api.tasks.SourceSetContainer;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.jvm.toolchain.JavaToolchainService;
 
+import javax.inject.Inject;
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-public class AcpPlugin implements Plugin<Project> {
+public abstract class AcpPlugin implements Plugin<Project> {
+
+    @Inject
+    protected abstract BuildEventsListenerRegistry getEventsListenerRegistry();
 
     @Override
     public void apply(Project project) {
         String minecraftVersion = project.getExtensions().getExtraProperties().get("MC_VERSION").toString();
-        AcpExtension extension = project.getExtensions().create("acp", AcpExtension.class, project);
-
-        // Set the Minecraft version for the various directory/file paths to utilize.
-        Paths.init(minecraftVersion);
+        AcpExtension extension = project.getExtensions().create("acp", AcpExtension.class, project, minecraftVersion);
+        AcpLayout layout = extension.getLayout();
+        Provider<DownloadService> downloads = DownloadService.register(project, extension);
+        Provider<VersionMetadataService> metadata = VersionMetadataService.register(project);
+        Provider<ReportService> report = ReportService.register(project, getEventsListenerRegistry());
 
         project.getPluginManager().apply(JavaPlugin.class);
 
-        TaskProvider<JavaExec> stripJar = project.getTasks().register("stripJar", JavaExec.class);
+        TaskProvider<DownloadAcpData> downloadAcpData = project.getTasks().register("downloadAcpData", DownloadAcpData.class);
+        TaskProvider<DownloadVersionJson> downloadVersionJson = project.getTasks().register("downloadVersionJson", DownloadVersionJson.class);
+        TaskProvider<DownloadClientJar> downloadClientJar = project.getTasks().register("downloadClientJar", DownloadClientJar.class);
+        TaskProvider<PrefetchAcpDependencies> prefetchAcpDependencies = project.getTasks().register("prefetchAcpDependencies", PrefetchAcpDependencies.class);
+        TaskProvider<ResolveAcpLibraries> resolveAcpLibraries = project.getTasks().register("resolveAcpLibraries", ResolveAcpLibraries.class);
+        TaskProvider<ResolveAcpTools> resolveAcpTools = project.getTasks().register("resolveAcpTools", ResolveAcpTools.class);
+        TaskProvider<ToolExec> stripJar = project.getTasks().register("stripJar", ToolExec.class);
         TaskProvider<InjectModPatches> injectModPatches = project.getTasks().register("injectModPatches", InjectModPatches.class);
-        TaskProvider<JavaExec> mcinject = project.getTasks().register("mcinject", JavaExec.class);
-        TaskProvider<JavaExec> deobfJar = project.getTasks().register("deobfJar", JavaExec.class);
-        TaskProvider<JavaExec> decompileJar = project.getTasks().register("decompileJar", JavaExec.class);
+        TaskProvider<ToolExec> mcinject = project.getTasks().register("mcinject", ToolExec.class);
+        TaskProvider<ToolExec> deobfJar = project.getTasks().register("deobfJar", ToolExec.class);
+        TaskProvider<DeobfuscateJar> deobfuscate = project.getTasks().register("deobfuscate", DeobfuscateJar.class);
+        TaskProvider<DecompileJar> decompileJar = project.getTasks().register("decompileJar", DecompileJar.class);
         TaskProvider<Copy> unzip = project.getTasks().register("unzip", Copy.class);
-        TaskProvider<JavaExec> patch = project.getTasks().register("patch", JavaExec.class);
+        TaskProvider<ToolExec> patch = project.getTasks().register("patch", ToolExec.class);
         TaskProvider<RepackageDefaults> repackageDefaults = project.getTasks().register("repackageDefaults", RepackageDefaults.class);
         TaskProvider<Copy> copyJarAssets = project.getTasks().register("copyJarAssets", Copy.class);
         TaskProvider<Copy> copySrc = project.getTasks().register("copySrc", Copy.class);
         TaskProvider<JavaCompile> testCompile = project.getTasks().register("testCompile", JavaCompile.class);
         TaskProvider<MakeHashes> makeOriginalHashes = project.getTasks().register("makeOriginalHashes", MakeHashes.class);
+        TaskProvider<DownloadAssets> downloadAssets = project.getTasks().register("downloadAssets", DownloadAssets.class);
+        TaskProvider<ExtractNatives> extractNatives = project.getTasks().register("extractNatives", ExtractNatives.class);
+        TaskProvider<LockAcpDependencies> lockAcpDependencies = project.getTasks().register("lockAcpDependencies", LockAcpDependencies.class);
 
         Configuration jarsplitter = project.getConfigurations().create("jarsplitter");
         Configuration mcinjector = project.getConfigurations().create("mcinjector");
@@ -52,127 +94,409 @@ public class AcpPlugin implements Plugin<Project> {
         Configuration diffpatch = project.getConfigurations().create("diffpatch");
         Configuration binpatch = project.getConfigurations().create("binpatch");
 
-        project.afterEvaluate(proj -> {
-            try {
-                AcpInitializer.init(proj, extension, minecraftVersion);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        // Setup: every stage is a task of its own with declared inputs and outputs, so configuring the project does no
+        // I/O, and up-to-date stages are skipped without touching the network. The task graph is the dependency graph of
+        // the stages: a stage only depends on the tasks producing its inputs, and each submits its work to the worker
+        // API without waiting for it, so independent stages (e.g. downloadAcpData and downloadVersionJson) run at once
+        // and a cold setup takes about as long as its longest chain.
+        Provider<Long> ttl = getRefreshTtl(project, extension);
+        File cacheDir = Util.getCacheDir(project);
+        File lockFile = project.file(DependencyLock.FILE_NAME);
+        Map<String, String> tools = DependencyLock.getTools(project);
+
+        downloadAcpData.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Downloads the ACP data and extracts it into the cfg directory.");
+            task.getData().set(extension.getData());
+            task.getOutputDir().set(layout.getCfgDir());
+            task.getDataZip().set(layout.getAcpData());
+            task.getSrg().set(layout.getSrg());
+            task.getJarDependencies().set(layout.getJarDependencies());
+            task.getTtl().set(ttl);
+            task.getJournal().set(layout.getJournalDir().file("downloadAcpData.json"));
+            task.getDownloadService().set(downloads);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        downloadVersionJson.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Downloads the version JSON.");
+            task.getVersion().set(minecraftVersion);
+            task.getManifest().set(layout.getVersionManifest());
+            task.getOutput().set(layout.getJson());
+            task.getTtl().set(ttl);
+            task.getJournal().set(layout.getJournalDir().file("downloadVersionJson.json"));
+            task.getDownloadService().set(downloads);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        Provider<RegularFile> versionJson = downloadVersionJson.flatMap(DownloadVersionJson::getOutput);
+        Provider<RegularFile> jarDependencies = downloadAcpData.flatMap(DownloadAcpData::getJarDependencies);
+
+        downloadClientJar.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Downloads the client JAR.");
+            task.getVersion().set(minecraftVersion);
+            task.getVersionJson().set(versionJson);
+            task.getOutput().set(layout.getBaseJar());
+            task.getJournal().set(layout.getJournalDir().file("downloadClientJar.json"));
+            task.getDownloadService().set(downloads);
+            task.getMetadataService().set(metadata);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.usesService(metadata);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        prefetchAcpDependencies.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Downloads the libraries and tools pinned in " + DependencyLock.FILE_NAME + ".");
+            task.getVersionJson().set(versionJson);
+            task.getJarDependencies().set(jarDependencies);
+            task.getLockFile().set(lockFile);
+            task.getTools().set(tools);
+            task.getCacheDir().set(new File(cacheDir, "repo/"));
+            task.getThreads().set(extension.getDownloadThreads());
+            task.getDownloadService().set(downloads);
+            task.getMetadataService().set(metadata);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.usesService(metadata);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        resolveAcpLibraries.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Downloads Minecraft's libraries for the implementation configuration.");
+            task.dependsOn(prefetchAcpDependencies);
+            task.getVersionJson().set(versionJson);
+            task.getJarDependencies().set(jarDependencies);
+            task.getLockFile().set(lockFile);
+            task.getRepositories().set(project.provider(() -> getRepositories(project)));
+            task.getCacheDir().set(cacheDir);
+            task.getOutputDir().set(layout.getLibrariesDir());
+            task.getThreads().set(extension.getDownloadThreads());
+            task.getDownloadService().set(downloads);
+            task.getMetadataService().set(metadata);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.usesService(metadata);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        resolveAcpTools.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Links the tools pinned in " + DependencyLock.FILE_NAME + " for their configurations.");
+            task.dependsOn(prefetchAcpDependencies);
+            task.getLockFile().set(lockFile);
+            task.getTools().set(tools);
+            task.getCacheDir().set(new File(cacheDir, "repo/"));
+            task.getOutputDir().set(layout.getToolsDir());
+            ReportService.track(task, report);
+        });
+
+        // The libraries are the output of resolveAcpLibraries, so every task compiling or running against them runs it
+        // first. With a lockfile, the same goes for the tools and resolveAcpTools; only whether the lockfile exists is
+        // checked while configuring.
+        new ResolveLibrariesStep()
+                .setProject(project)
+                .setTask(resolveAcpLibraries)
+                .exec();
+
+        new ResolveToolsStep()
+                .setProject(project)
+                .setTools(tools)
+                .setTask(Util.track(project, lockFile) ? resolveAcpTools : null)
+                .exec();
+
+        project.getTasks().named(JavaPlugin.COMPILE_JAVA_TASK_NAME).configure(task -> task.dependsOn(prefetchAcpDependencies));
+
+        // Forked tools (including those of modtools) share a class data archive per tool and classpath.
+        File cdsDir = new File(cacheDir, "cds/");
+        project.getTasks().withType(ToolExec.class).configureEach(task -> {
+            task.getCoordinate().set(task.getTool().map(tools::get));
+            task.getClassDataDir().fileProvider(extension.getClassDataSharing().map(enabled -> enabled ? cdsDir : null));
         });
 
         stripJar.configure(task -> {
             task.setGroup("decompile");
+            task.getTool().set("jarsplitter");
+            task.getMode().set(extension.getToolModeValue());
             task.setDescription("Strips the JAR into two, one JAR containing the core Minecraft classes, and the other containing everything else.");
+            task.dependsOn(downloadAcpData, downloadClientJar, prefetchAcpDependencies);
             task.getMainClass().set("net.neoforged.jarsplitter.ConsoleTool");
             task.setClasspath(project.files(jarsplitter));
-            task.args("--input", Paths.BASE_JAR, "--slim", Paths.SLIM_JAR, "--extra", Paths.EXTRA_JAR, "--srg", Paths.SRG);
+            task.args("--input", AcpLayout.path(layout.getBaseJar()), "--slim", AcpLayout.path(layout.getSlimJar()),
+                    "--extra", AcpLayout.path(layout.getExtraJar()), "--srg", AcpLayout.path(layout.getSrg()));
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getSlimJar(), layout.getExtraJar());
         });
 
-        File modPatches = project.file(Paths.DIR_MODPATCHES);
+        File modPatches = layout.getModPatchesDir().get().getAsFile();
 
         injectModPatches.configure(task -> {
             task.setGroup("decompile");
             task.dependsOn(stripJar);
-            task.getInputJar().set(project.file(Paths.SLIM_JAR));
+            task.getInputJar().set(layout.getSlimJar());
             task.getPatchDir().set(modPatches);
-            task.getOutputJar().set(project.file(Paths.MODLOADER_JAR));
+            task.getOutputJar().set(layout.getModLoaderJar());
+            task.getClasspath().from(binpatch);
+            task.getMode().set(extension.getToolModeValue());
+            task.getCoordinate().set(tools.get("binpatch"));
+            task.getClassDataDir().fileProvider(extension.getClassDataSharing().map(enabled -> enabled ? cdsDir : null));
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            task.getReportService().set(report);
+            ReportService.track(task, report, layout.getModLoaderJar());
         });
 
-        boolean vanilla = !modPatches.exists(); // has the downloadModLoader task been run (and thus the modpatches dir created)? If not, assume vanilla workspace
-        String toInject = (vanilla ? Paths.SLIM_JAR : Paths.MODLOADER_JAR); // the JAR path to inject with MCInjector, depending on the vanilla status
-        String dependent = (vanilla ? "stripJar" : "injectModPatches"); // the task to run before the MCInject task, depending on the vanilla status.
+        // Has the downloadModLoader task been run (and thus the modpatches dir created)? If not, assume vanilla workspace.
+        // Checked when the task graph is built rather than while configuring.
+        Provider<Boolean> vanilla = project.provider(() -> !modPatches.exists());
 
         mcinject.configure(task -> {
             task.setGroup("decompile");
+            task.getTool().set("mcinjector");
+            task.getMode().set(extension.getToolModeValue());
             task.setDescription("Injects the slim JAR with local variables, exceptions, and other stuff to eliminate errors.");
-            task.dependsOn(project.getTasks().getByName(dependent));
+            task.dependsOn(vanilla.map(v -> v ? stripJar.get() : injectModPatches.get())); // the task to run before, depending on the vanilla status
             task.getMainClass().set("de.oceanlabs.mcp.mcinjector.MCInjector");
             task.setClasspath(project.files(mcinjector));
-            task.args("--in", toInject, "--out", Paths.INJECT_JAR, "--exc", Paths.DIR_MAPPINGS + "exceptions.txt", "--blacklist", Paths.DIR_MAPPINGS + "blacklist.txt");
+            // The JAR to inject, depending on the vanilla status when the task runs. Everything the provider uses is
+            // captured here, since it may run from the configuration cache.
+            String slimJar = AcpLayout.path(layout.getSlimJar());
+            String modJar = AcpLayout.path(layout.getModLoaderJar());
+            List<String> args = Arrays.asList("--out", AcpLayout.path(layout.getInjectJar()),
+                    "--exc", AcpLayout.path(layout.getMappingsDir(), "exceptions.txt"), "--blacklist", AcpLayout.path(layout.getMappingsDir(), "blacklist.txt"));
+            task.getArgumentProviders().add(() -> {
+                List<String> all = new ArrayList<>(Arrays.asList("--in", modPatches.exists() ? modJar : slimJar));
+                all.addAll(args);
+                return all;
+            });
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getInjectJar());
         });
 
         deobfJar.configure(task -> {
             task.setGroup("decompile");
+            task.getTool().set("forgeart");
+            task.getMode().set(extension.getToolModeValue());
             task.setDescription("Deobfuscates the JAR with human-readable names.");
             task.dependsOn(mcinject);
             task.getMainClass().set("net.neoforged.art.Main");
             task.setClasspath(project.files(forgeart));
-            task.args("--input", Paths.INJECT_JAR, "--output", Paths.SRG_JAR, "--map", Paths.SRG, "--src-fix", "--strip-sigs");
+            task.args("--input", AcpLayout.path(layout.getInjectJar()), "--output", AcpLayout.path(layout.getSrgJar()),
+                    "--map", AcpLayout.path(layout.getSrg()), "--src-fix", "--strip-sigs");
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getSrgJar());
         });
 
+        deobfuscate.configure(task -> {
+            task.setGroup("decompile");
+            task.setDescription("Splits, patches, injects and deobfuscates the JAR in one go. Replaces stripJar through deobfJar if fused deobfuscation is on.");
+            task.dependsOn(downloadAcpData, downloadClientJar, prefetchAcpDependencies);
+            task.getInputJar().set(layout.getBaseJar());
+            task.getSrg().set(layout.getSrg());
+            task.getExceptions().set(layout.getMappingsDir().file("exceptions.txt"));
+            task.getBlacklist().set(layout.getMappingsDir().file("blacklist.txt"));
+            task.getPatches().from(project.fileTree(modPatches).matching(filter -> filter.include("**/*.lzma")));
+            task.getBinpatchClasspath().from(binpatch);
+            task.getInjectorClasspath().from(mcinjector);
+            task.getRenamerClasspath().from(forgeart);
+            task.getExtraJar().set(layout.getFusedExtraJar());
+            task.getOutputJar().set(layout.getFusedSrgJar());
+            task.getMode().set(extension.getToolModeValue());
+            task.getCoordinates().set(tools);
+            task.getClassDataDir().fileProvider(extension.getClassDataSharing().map(enabled -> enabled ? cdsDir : null));
+            task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            task.getReportService().set(report);
+            ReportService.track(task, report, layout.getFusedExtraJar(), layout.getFusedSrgJar());
+        });
+
+        // The JARs of whichever deobfuscation runs, the fused task or stripJar through deobfJar.
+        Provider<RegularFile> srgJar = extension.getFusedDeobfuscation()
+                .flatMap(fused -> fused ? deobfuscate.flatMap(DeobfuscateJar::getOutputJar) : layout.getSrgJar());
+        Provider<RegularFile> extraJar = extension.getFusedDeobfuscation()
+                .flatMap(fused -> fused ? deobfuscate.flatMap(DeobfuscateJar::getExtraJar) : layout.getExtraJar());
+
         decompileJar.configure(task -> {
             task.setGroup("decompile");
             task.setDescription("Decompiles the JAR.");
-            task.dependsOn(deobfJar);
-            task.getMainClass().set("org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler");
-            task.setClasspath(project.files(fernflower));
-            task.args("-rbr=0", "-rsy=0", "-asc=1", "-din=1", "-dgs=0", "-jvn=1", Paths.SRG_JAR, Paths.FINAL_JAR);
+            task.dependsOn(extension.getFusedDeobfuscation().map(fused -> fused ? deobfuscate.get() : deobfJar.get()));
+            task.getInputJar().set(srgJar);
+            task.getOutputJar().set(layout.getFinalJar());
+            task.getOptions().addAll("-rbr=0", "-rsy=0", "-asc=1", "-din=1", "-dgs=0", "-jvn=1");
+            task.getClasspath().from(fernflower);
+            task.getShards().set(extension.getDecompileShards());
+            task.getJavaLauncher().set(project.getExtensions().getByType(JavaToolchainService.class)
+                    .launcherFor(project.getExtensions().getByType(JavaPluginExtension.class).getToolchain()));
+            task.getMode().set(extension.getToolModeValue());
+            task.getCoordinate().set(tools.get("fernflower"));
+            task.getClassDataDir().fileProvider(extension.getClassDataSharing().map(enabled -> enabled ? cdsDir : null));
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            task.getReportService().set(report);
+            ReportService.track(task, report, layout.getFinalJar());
         });
 
         unzip.configure(task -> {
             task.setGroup("decompile");
             task.setDescription("Unzips the java source files into the src directory.");
             task.dependsOn(decompileJar);
-            task.from(project.zipTree(project.file(Paths.FINAL_JAR)));
-            task.into(project.file(Paths.DIR_SRC));
+            task.from(project.zipTree(layout.getFinalJar()));
+            task.into(layout.getSrcDir());
+            ReportService.track(task, report, layout.getSrcDir());
         });
 
         patch.configure(task -> {
             task.setGroup("decompile");
+            task.getTool().set("diffpatch");
+            task.getMode().set(extension.getToolModeValue());
             task.setDescription("Patches the source files to make the game able to compile.");
             task.dependsOn(unzip);
             task.getMainClass().set("codechicken.diffpatch.DiffPatch");
             task.setClasspath(project.files(diffpatch));
-            task.args("--patch", Paths.DIR_SRC, Paths.DIR_PATCHES, "--output", Paths.DIR_SRC,
-                    "--reject", Paths.DIR_TEMP + "patch_rejects/");
+            task.args("--patch", AcpLayout.path(layout.getSrcDir()), AcpLayout.path(layout.getPatchesDir()), "--output", AcpLayout.path(layout.getSrcDir()),
+                    "--reject", AcpLayout.path(layout.getTempDir(), "patch_rejects/"));
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getSrcDir());
         });
 
         repackageDefaults.configure(task -> {
             task.setGroup("decompile");
             task.setDescription("Repackages any default source files into the net/minecraft/src directory.");
             task.dependsOn(patch);
-            task.getSourceDirIn().set(project.file(Paths.DIR_SRC));
-            task.getSourceDirOut().set(project.file(Paths.DIR_SRC));
+            task.getSourceDirIn().fileProvider(layout.getSrcDir().getAsFile());
+            task.getSourceDirOut().fileProvider(layout.getSrcDir().getAsFile());
+            ReportService.track(task, report, layout.getSrcDir());
         });
 
         copyJarAssets.configure(task -> {
             task.setGroup("decompile");
             task.setDescription("Copies the JAR assets into the src/main/resources folder.");
             task.dependsOn(repackageDefaults);
-            task.from(project.zipTree(project.file(Paths.EXTRA_JAR)));
-            task.into(project.file(Paths.DIR_RESOURCES));
+            task.from(project.zipTree(extraJar));
+            task.into(layout.getResourcesDir());
             task.exclude("com/**", "paulscode/**");
+            ReportService.track(task, report, layout.getResourcesDir());
         });
 
         copySrc.configure(task -> {
            task.setGroup("decompile");
            task.dependsOn(copyJarAssets);
-           task.from(project.file(Paths.DIR_SRC)).exclude("acp/");
-           task.into(project.file(Paths.DIR_ORIGINAL_SRC));
+           task.from(layout.getSrcDir()).exclude("acp/");
+           task.into(layout.getOriginalSrcDir());
+           ReportService.track(task, report, layout.getOriginalSrcDir());
         });
 
         testCompile.configure(task -> {
             task.setGroup("decompile");
             task.dependsOn(copySrc);
-            task.setSource(project.file(Paths.DIR_SRC));
+            task.setSource(layout.getSrcDir());
             task.setClasspath(project.getExtensions().getByType(SourceSetContainer.class).getByName("main").getCompileClasspath());
-            task.getDestinationDirectory().set(new File(Paths.DIR_ORIGINAL_CLASSES));
+            task.getDestinationDirectory().set(layout.getOriginalClassesDir());
             task.getOptions().setCompilerArgs(Arrays.asList("-g:none", "-source", "1.6", "-target", "1.6"));
             task.exclude("acp/");
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getOriginalClassesDir());
         });
 
         makeOriginalHashes.configure(task -> {
             task.setGroup("decompile");
             task.dependsOn(testCompile);
-            task.getClassesDirectory().set(project.file(Paths.DIR_ORIGINAL_CLASSES));
-            task.getOutput().set(project.file("build/modding/hashes/original.md5"));
+            task.getClassesDirectory().fileProvider(layout.getOriginalClassesDir().getAsFile());
+            task.getOutput().set(layout.getHashesDir().file("original.md5"));
+            ReportService.track(task, report, layout.getHashesDir().file("original.md5"));
         });
+
+        downloadAssets.configure(task -> {
+            task.setGroup("acp-run");
+            task.setDescription("Downloads the game's assets into the run directory.");
+            task.getVersionJson().set(versionJson);
+            task.getRunDir().set(layout.getRunDir());
+            task.getResourcesDir().set(layout.getRunDir().dir("resources/"));
+            task.getStoreDir().set(new File(cacheDir, "assets/"));
+            task.getThreads().set(extension.getDownloadThreads());
+            task.getDownloadService().set(downloads);
+            task.getMetadataService().set(metadata);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.usesService(metadata);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        extractNatives.configure(task -> {
+            task.setGroup("acp-run");
+            task.setDescription("Downloads and extracts the LWJGL natives for this operating system.");
+            task.getVersionJson().set(versionJson);
+            task.getOutputDir().set(layout.getNativesDir());
+            task.getCacheDir().set(new File(cacheDir, "natives/"));
+            task.getJournal().set(layout.getJournalDir().file("extractNatives.json"));
+            task.getDownloadService().set(downloads);
+            task.getMetadataService().set(metadata);
+            task.getMirrors().set(extension.getMirrors().getMirrors());
+            task.usesService(downloads);
+            task.usesService(metadata);
+            task.getReportService().set(report);
+            ReportService.track(task, report);
+        });
+
+        lockAcpDependencies.configure(task -> {
+            task.setGroup("acp");
+            task.setDescription("Pins Minecraft's libraries and ACP's tools in " + DependencyLock.FILE_NAME + ", so they can be prefetched.");
+            task.getVersionJson().set(versionJson);
+            task.getJarDependencies().set(jarDependencies);
+            task.getTools().set(tools);
+            task.getThreads().set(extension.getDownloadThreads());
+            task.getMetadataService().set(metadata);
+            task.getLockFile().set(project.file(DependencyLock.FILE_NAME));
+            task.usesService(metadata);
+            task.notCompatibleWithConfigurationCache("Resolves detached configurations of the project");
+            ReportService.track(task, report, lockFile);
+        });
+
+        // Only running the game needs assets and natives. Tasks are matched by name since runClient is declared by the
+        // workspace's build script, not by this plugin.
+        project.getTasks().withType(JavaExec.class).configureEach(task -> {
+            if (task.getName().equals("runClient")) {
+                task.dependsOn(downloadAssets, extractNatives);
+            }
+        });
+    }
+
+    /**
+     * Gets the URLs of the project's maven repositories, which Minecraft's libraries are downloaded from.
+     * @param project The gradle project.
+     * @return The URLs, in declaration order, each ending with a slash.
+     */
+    private static List<String> getRepositories(Project project) {
+        List<String> repositories = new ArrayList<>();
+        project.getRepositories().withType(MavenArtifactRepository.class).forEach(repo -> {
+            String url = repo.getUrl().toString();
+            repositories.add(url.endsWith("/") ? url : url + "/");
+        });
+        return repositories;
+    }
+
+    /**
+     * Gets how long cached downloads are trusted before being revalidated. Offline builds never revalidate, and
+     * --refresh-dependencies always does. The refresh hours are read lazily, once the build script has set them.
+     * @param project The gradle project.
+     * @param extension The ACP plugin extension.
+     * @return The TTL in milliseconds.
+     */
+    private static Provider<Long> getRefreshTtl(Project project, AcpExtension extension) {
+        StartParameter start = project.getGradle().getStartParameter();
+        boolean offline = start.isOffline();
+        boolean refresh = start.isRefreshDependencies();
+        return extension.getRefreshHours().map(hours -> offline ? Long.MAX_VALUE : refresh ? 0 : TimeUnit.HOURS.toMillis(hours));
     }
 }
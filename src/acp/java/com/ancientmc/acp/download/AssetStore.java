@@ -0,0 +1,99 @@
+package com.ancientmc.acp.download;
+
+import com.ancientmc.acp.util.Util;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Content-addressed store for asset objects, shared by every ACP workspace on the machine.
+ * Objects are kept under their SHA-1 the same way Mojang's launcher lays them out (objects/ab/abcdef...), and workspaces
+ * get their named resource files by hard-linking to them.
+ * <p>
+ * Objects are written under a per-shard file lock, so any number of Gradle processes can fill the store at the same time
+ * without fetching the same object twice or seeing a half-written one.
+ */
+public class AssetStore {
+    /**
+     * In-process monitors for each shard. File locks are held per JVM, not per thread, so threads of the same process
+     * have to be kept apart separately.
+     */
+    private static final ConcurrentMap<String, Object> MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * The "objects" directory of the store.
+     */
+    private final File objects;
+    /**
+     * The download service missing objects are fetched through.
+     */
+    private final DownloadService downloads;
+
+    /**
+     * @param root The root directory of the store.
+     * @param downloads The download service missing objects are fetched through.
+     */
+    public AssetStore(File root, DownloadService downloads) {
+        this.objects = new File(root, "objects/");
+        this.downloads = downloads;
+    }
+
+    /**
+     * Gets the store location of an object, whether it exists or not.
+     * @param hash The SHA-1 of the object.
+     * @return The object file.
+     */
+    public File getObject(String hash) {
+        return new File(objects, hash.substring(0, 2) + '/' + hash);
+    }
+
+    /**
+     * Makes sure an object is in the store, downloading it if needed. The download is checked against the hash before
+     * it is moved into place.
+     * @param hash The SHA-1 of the object.
+     * @param url The URL the object is downloaded from if it is missing.
+     * @return The object file.
+     * @throws IOException If the download fails or doesn't match the hash.
+     */
+    public File fetch(String hash, URL url) throws IOException {
+        File object = getObject(hash);
+        if (object.exists()) {
+            return object;
+        }
+
+        File shard = object.getParentFile();
+        FileUtils.forceMkdir(shard);
+
+        synchronized (MONITORS.computeIfAbsent(shard.getName(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(new File(shard, ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                // Another process may have written it while we were waiting for the lock.
+                if (object.exists()) {
+                    return object;
+                }
+
+                downloads.downloadAtomic(url, object, hash, null);
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Places an object at the target path, preferring a hard link and falling back to a copy where links aren't
+     * possible (e.g. the store and the workspace are on different drives).
+     * @param hash The SHA-1 of the object.
+     * @param url The URL the object is downloaded from if it isn't in the store yet.
+     * @param target The named resource file in the workspace.
+     * @throws IOException
+     */
+    public void install(String hash, URL url, File target) throws IOException {
+        Util.link(fetch(hash, url), target);
+    }
+}
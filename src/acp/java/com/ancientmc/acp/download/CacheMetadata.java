@@ -0,0 +1,141 @@
+package com.ancientmc.acp.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * HTTP cache metadata kept next to a downloaded file (as "file.meta"), used to revalidate the file with a conditional
+ * request instead of downloading it again. A 304 response costs a round trip but no body transfer.
+ */
+public class CacheMetadata {
+    /**
+     * The sidecar file the metadata is stored in.
+     */
+    private final File file;
+    /**
+     * The URL the cached file was downloaded from. If it changes, the cached file is stale regardless of age.
+     */
+    private String url;
+    /**
+     * The ETag sent with the cached file, if any.
+     */
+    private String etag;
+    /**
+     * The Last-Modified date sent with the cached file, if any.
+     */
+    private String lastModified;
+    /**
+     * When the cached file was last downloaded or revalidated, in epoch milliseconds.
+     */
+    private long checked;
+
+    private CacheMetadata(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the metadata of a cached file. Missing or unreadable metadata is treated as empty.
+     * @param cached The cached file.
+     * @return The metadata.
+     */
+    public static CacheMetadata of(File cached) {
+        CacheMetadata meta = new CacheMetadata(new File(cached.getPath() + ".meta"));
+        if (meta.file.exists()) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(meta.file.toPath())) {
+                properties.load(in);
+                meta.url = properties.getProperty("url");
+                meta.etag = properties.getProperty("etag");
+                meta.lastModified = properties.getProperty("lastModified");
+                meta.checked = Long.parseLong(properties.getProperty("checked", "0"));
+            } catch (IOException | NumberFormatException e) {
+                meta.checked = 0;
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * Checks whether the cached file was downloaded from the same URL and checked recently enough to be used without
+     * asking the server.
+     * @param url The URL the file would be downloaded from.
+     * @param ttl How long a check stays valid, in milliseconds.
+     * @return True if the cached file can be used as-is.
+     */
+    public boolean isFresh(URL url, long ttl) {
+        return url.toString().equals(this.url) && System.currentTimeMillis() - checked < ttl;
+    }
+
+    /**
+     * Adds the conditional request headers for the cached file, if the server gave us validators for the same URL.
+     * @param connection The connection, before the request is sent.
+     */
+    public void apply(URLConnection connection) {
+        if (!connection.getURL().toString().equals(url)) {
+            return;
+        }
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Records the validators of a full response, which replaced the cached file.
+     * @param connection The connection the file was downloaded with.
+     */
+    public void update(URLConnection connection) {
+        this.url = connection.getURL().toString();
+        this.etag = connection.getHeaderField("ETag");
+        this.lastModified = connection.getHeaderField("Last-Modified");
+        touch();
+    }
+
+    /**
+     * Takes over the metadata of another copy of the same download.
+     * @param other The metadata of the other copy.
+     */
+    public void copyFrom(CacheMetadata other) {
+        this.url = other.url;
+        this.etag = other.etag;
+        this.lastModified = other.lastModified;
+        this.checked = other.checked;
+    }
+
+    /**
+     * Marks the cached file as checked just now.
+     */
+    public void touch() {
+        this.checked = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes the metadata to its sidecar file.
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        if (url != null) {
+            properties.setProperty("url", url);
+        }
+        if (etag != null) {
+            properties.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty("lastModified", lastModified);
+        }
+        properties.setProperty("checked", Long.toString(checked));
+
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            properties.store(out, null);
+        }
+    }
+}
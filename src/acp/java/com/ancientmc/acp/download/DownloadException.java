@@ -0,0 +1,45 @@
+package com.ancientmc.acp.download;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown once a batch of downloads has finished when one or more of them failed.
+ * The message lists every failure, keyed by the name it was submitted with.
+ */
+public class DownloadException extends IOException {
+    /**
+     * The number of failures spelled out in the message. The rest are only counted.
+     */
+    private static final int LISTED = 20;
+
+    /**
+     * The failures, keyed by job name.
+     */
+    private final Map<String, Throwable> failures;
+
+    public DownloadException(Map<String, Throwable> failures) {
+        super(describe(failures));
+        this.failures = Collections.unmodifiableMap(failures);
+        failures.values().forEach(this::addSuppressed);
+    }
+
+    private static String describe(Map<String, Throwable> failures) {
+        StringBuilder builder = new StringBuilder(failures.size() + " download(s) failed:");
+        int listed = 0;
+
+        for (Map.Entry<String, Throwable> entry : failures.entrySet()) {
+            if (listed++ == LISTED) {
+                builder.append("\n  ... and ").append(failures.size() - LISTED).append(" more");
+                break;
+            }
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue().getMessage());
+        }
+        return builder.toString();
+    }
+
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ancientmc.acp.download;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs downloads on a fixed number of threads. Jobs start as soon as they are added; a failing job doesn't stop the
+ * others, and all failures are reported together by {@link #await()}.
+ */
+public class DownloadQueue {
+    /**
+     * The thread pool the jobs run on.
+     */
+    private final ExecutorService executor;
+    /**
+     * Failed jobs, keyed by name. Sorted so that the report is stable between runs.
+     */
+    private final Map<String, Throwable> failures = new TreeMap<>();
+    /**
+     * The number of jobs that completed successfully.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * @param threads The maximum number of downloads running at once.
+     */
+    public DownloadQueue(int threads) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new DownloadThreadFactory());
+    }
+
+    /**
+     * Queues an arbitrary download job.
+     * @param name The name the job is reported under if it fails.
+     * @param job The job.
+     */
+    public void submit(String name, Job job) {
+        executor.execute(() -> {
+            try {
+                job.run();
+                count.incrementAndGet();
+            } catch (Throwable t) {
+                synchronized (failures) {
+                    failures.put(name, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for every queued job to finish and shuts down the thread pool.
+     * @return The number of jobs that completed successfully.
+     * @throws DownloadException If any job failed.
+     * @throws IOException If the wait was interrupted.
+     */
+    public int await() throws IOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, large asset indexes can take a while on slow connections
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for downloads", e);
+        }
+
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                throw new DownloadException(new TreeMap<>(failures));
+            }
+        }
+        return count.get();
+    }
+
+    /**
+     * A single unit of work in the queue.
+     */
+    @FunctionalInterface
+    public interface Job {
+        void run() throws IOException;
+    }
+
+    /**
+     * Names the download threads and makes them daemons, so a stuck connection never keeps Gradle alive.
+     */
+    private static class DownloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "acp-download-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
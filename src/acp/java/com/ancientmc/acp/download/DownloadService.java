@@ -0,0 +1,253 @@
+package com.ancientmc.acp.download;
+
+import com.ancientmc.acp.AcpExtension;
+import com.ancientmc.acp.util.Events;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The download engine shared by every ACP and modtools download in a build, across all projects.
+ * <ul>
+ *     <li>All downloads share one concurrency budget, so a multi-project build never opens more connections at once
+ *     than configured, no matter how many projects or threads are downloading.</li>
+ *     <li>Identical URLs that are requested while a download of them is already in flight are not fetched again; the
+ *     later callers wait for the first one and get a copy of its result.</li>
+ *     <li>Connections are reused through the JDK's keep-alive cache, since every response body is read to the end.
+ *     JSON metadata is requested gzip-compressed.</li>
+ * </ul>
+ * Every download is a flight recorder event with its URL and the bytes it transferred, see {@link Events}.
+ * @see Downloads
+ */
+public abstract class DownloadService implements BuildService<DownloadService.Params>, AutoCloseable {
+    /**
+     * The name the service is registered under.
+     */
+    public static final String NAME = "acpDownloads";
+    /**
+     * The concurrency budget used if no project configured one.
+     */
+    private static final int DEFAULT_MAX_CONCURRENT = 8;
+
+    /**
+     * Limits the number of downloads running at once.
+     */
+    private final Semaphore permits;
+    /**
+     * Downloads currently in flight, keyed by URL.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * The mirror picked for each list of candidates, so mirrors are only probed once per build.
+     */
+    private final ConcurrentMap<List<String>, String> mirrors = new ConcurrentHashMap<>();
+
+    public DownloadService() {
+        this.permits = new Semaphore(Math.max(1, getParameters().getMaxConcurrent().getOrElse(DEFAULT_MAX_CONCURRENT)), true);
+    }
+
+    /**
+     * Registers the service for the build, or gets the existing registration. The concurrency budget is taken from the
+     * ACP extension of the first project that registers it.
+     * @param project The gradle project.
+     * @param extension The ACP plugin extension, or null if the project has none.
+     * @return The service provider.
+     */
+    public static Provider<DownloadService> register(Project project, AcpExtension extension) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, DownloadService.class, spec -> {
+            if (extension != null) {
+                spec.getParameters().getMaxConcurrent().set(extension.getDownloadThreads());
+            }
+        });
+    }
+
+    /**
+     * Downloads the contents of a URL into a file.
+     * @param url The URL.
+     * @param file The output file.
+     * @return The number of bytes transferred over the network.
+     * @throws IOException
+     * @see Downloads#download(URL, File)
+     */
+    public long download(URL url, File file) throws IOException {
+        return coalesce(url, file, null, () -> Downloads.download(url, file));
+    }
+
+    /**
+     * Downloads a URL into a file atomically, optionally verified and revalidated.
+     * @param url The URL.
+     * @param file The output file.
+     * @param sha1 The expected SHA-1 of the file, or null if unknown.
+     * @param meta The cache metadata of the output file, or null to always download.
+     * @return The number of bytes transferred over the network, or {@link Downloads#NOT_MODIFIED}.
+     * @throws IOException
+     * @see Downloads#downloadAtomic(URL, File, String, CacheMetadata)
+     */
+    public long downloadAtomic(URL url, File file, String sha1, CacheMetadata meta) throws IOException {
+        return coalesce(url, file, meta, () -> Downloads.downloadAtomic(url, file, sha1, meta));
+    }
+
+    /**
+     * Picks the fastest of a list of mirrors. The first caller probes them; everyone else gets the same answer for the
+     * rest of the build.
+     * @param candidates The base URLs, in order of preference.
+     * @return The base URL to use.
+     * @see Mirrors#probe(List)
+     */
+    public String selectMirror(List<String> candidates) {
+        return mirrors.computeIfAbsent(new ArrayList<>(candidates), Mirrors::probe);
+    }
+
+    /**
+     * Reads a byte range of a remote file, within the concurrency budget.
+     * @param url The URL.
+     * @param start The first byte, or a negative number to read that many bytes from the end of the file.
+     * @param end The last byte (inclusive). Ignored when reading from the end.
+     * @return The bytes and their position within the file.
+     * @throws IOException
+     * @see Downloads#readRange(URL, long, long)
+     */
+    public Downloads.ByteRange readRange(URL url, long start, long end) throws IOException {
+        Downloads.ByteRange[] range = new Downloads.ByteRange[1];
+        try (Events.Span span = Events.download(url)) {
+            span.setBytes(limit(() -> {
+                range[0] = Downloads.readRange(url, start, end);
+                return range[0].data.length;
+            }));
+        }
+        return range[0];
+    }
+
+    /**
+     * Streams the response body of a URL into a reader, within the concurrency budget. Streams aren't coalesced, since
+     * there is no file to share with other callers.
+     * @param url The URL.
+     * @param reader The reader of the response body.
+     * @throws IOException
+     * @see Downloads#stream(URL, Downloads.BodyReader)
+     */
+    public void stream(URL url, Downloads.BodyReader reader) throws IOException {
+        try (Events.Span ignored = Events.download(url)) {
+            limit(() -> {
+                Downloads.stream(url, reader);
+                return 0;
+            });
+        }
+    }
+
+    /**
+     * Runs a download within the concurrency budget, unless the same URL is already being downloaded, in which case
+     * the running download's result is waited for and copied to this caller's output file.
+     */
+    private long coalesce(URL url, File file, CacheMetadata meta, Download download) throws IOException {
+        String key = url.toString();
+        CompletableFuture<Result> mine = new CompletableFuture<>();
+        CompletableFuture<Result> running = inFlight.putIfAbsent(key, mine);
+
+        if (running != null) {
+            Result result = await(running);
+            if (result.file.getCanonicalFile().equals(file.getCanonicalFile())) {
+                return result.bytes;
+            }
+
+            File part = new File(file.getPath() + ".part");
+            Files.copy(result.file.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Downloads.move(part, file);
+            if (meta != null && result.meta != null) {
+                meta.copyFrom(result.meta);
+            }
+            return 0;
+        }
+
+        try (Events.Span span = Events.download(url)) {
+            long bytes = limit(download);
+            span.setBytes(Math.max(bytes, 0));
+            mine.complete(new Result(file, bytes, meta));
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Runs a download once a permit of the concurrency budget is available.
+     */
+    private long limit(Download download) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a download slot");
+        }
+
+        try {
+            return download.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static Result await(CompletableFuture<Result> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a download");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        inFlight.clear();
+        mirrors.clear();
+    }
+
+    public interface Params extends BuildServiceParameters {
+        /**
+         * The maximum number of downloads running at once in the whole build.
+         */
+        Property<Integer> getMaxConcurrent();
+    }
+
+    @FunctionalInterface
+    private interface Download {
+        long run() throws IOException;
+    }
+
+    /**
+     * The outcome of a finished download, shared with the callers that waited for it.
+     */
+    private static class Result {
+        private final File file;
+        private final long bytes;
+        private final CacheMetadata meta;
+
+        private Result(File file, long bytes, CacheMetadata meta) {
+            this.file = file;
+            this.bytes = bytes;
+            this.meta = meta;
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.ancientmc.acp.download;
+
+import com.ancientmc.acp.util.Util;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Low-level download utilities. Steps and tasks don't call these directly, but go through the shared
+ * {@link DownloadService}, which adds the build-wide concurrency limit and de-duplication on top.
+ */
+public class Downloads {
+    /**
+     * Size of the copy buffer. Large enough that a typical asset is written in a handful of calls.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Connect and read timeout, in milliseconds.
+     */
+    public static final int TIMEOUT = 30_000;
+    /**
+     * Returned by {@link #downloadAtomic(URL, File, String, CacheMetadata)} when the server confirmed that the cached
+     * file is still current.
+     */
+    public static final long NOT_MODIFIED = -1;
+
+    /**
+     * Downloads the contents of a URL into a file, creating parent directories if needed.
+     * The response body is always read to the end and closed, which lets the JDK return HTTP connections to its
+     * keep-alive cache so that subsequent downloads from the same host reuse them.
+     * @param url The URL.
+     * @param file The output file.
+     * @return The number of bytes written.
+     * @throws IOException
+     */
+    public static long download(URL url, File file) throws IOException {
+        return download(url, file, null);
+    }
+
+    /**
+     * Downloads the contents of a URL into a file, feeding every byte into a digest on the way.
+     * @param url The URL.
+     * @param file The output file.
+     * @param digest The digest to update, or null.
+     * @return The number of bytes written.
+     * @throws IOException
+     */
+    public static long download(URL url, File file, MessageDigest digest) throws IOException {
+        URLConnection connection = open(url);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+
+        try (InputStream in = wrap(body(connection), digest); OutputStream out = new FileOutputStream(file)) {
+            return copy(in, out);
+        }
+    }
+
+    /**
+     * Opens a URL and hands its response body to a reader instead of writing it to a file, e.g. to unpack an archive
+     * while it downloads. Whatever the reader leaves unread is drained afterwards, so the connection can still be reused.
+     * @param url The URL.
+     * @param reader The reader of the response body.
+     * @throws IOException
+     */
+    public static void stream(URL url, BodyReader reader) throws IOException {
+        InputStream in = body(open(url));
+        try {
+            reader.read(in);
+        } finally {
+            drain(in);
+        }
+    }
+
+    /**
+     * Reads a byte range of a remote file with an HTTP Range request. file: URLs are read directly.
+     * @param url The URL.
+     * @param start The first byte, or a negative number to read that many bytes from the end of the file.
+     * @param end The last byte (inclusive). Ignored when reading from the end.
+     * @return The bytes and their position within the file.
+     * @throws IOException If the request fails or the server doesn't support ranges.
+     */
+    public static ByteRange readRange(URL url, long start, long end) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try (RandomAccessFile file = new RandomAccessFile(new File(url.toURI()), "r")) {
+                long total = file.length();
+                long from = start < 0 ? Math.max(0, total + start) : start;
+                long to = start < 0 ? total - 1 : Math.min(end, total - 1);
+                byte[] data = new byte[(int) (to - from + 1)];
+                file.seek(from);
+                file.readFully(data);
+                return new ByteRange(data, from, total);
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+
+        URLConnection connection = connect(url);
+        if (!(connection instanceof HttpURLConnection)) {
+            throw new IOException("Range requests aren't supported for " + url);
+        }
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestProperty("Accept-Encoding", "identity");
+        http.setRequestProperty("Range", start < 0 ? "bytes=" + start : "bytes=" + start + "-" + end);
+        check(http);
+
+        if (http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            drain(http.getInputStream());
+            throw new IOException("Server doesn't support range requests for " + url);
+        }
+
+        // Content-Range: bytes <first>-<last>/<total>
+        String range = http.getHeaderField("Content-Range");
+        long from;
+        long total;
+        try {
+            String spec = range.substring(range.indexOf(' ') + 1);
+            from = Long.parseLong(spec.substring(0, spec.indexOf('-')));
+            String length = spec.substring(spec.indexOf('/') + 1);
+            total = length.equals("*") ? -1 : Long.parseLong(length);
+        } catch (RuntimeException e) {
+            drain(http.getInputStream());
+            throw new IOException("Invalid Content-Range " + range + " for " + url);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = http.getInputStream()) {
+            copy(in, out);
+        }
+        return new ByteRange(out.toByteArray(), from, total);
+    }
+
+    /**
+     * Downloads a URL into a file without ever leaving a partial file at the output path.
+     * The data is first written to "file.part", hashed while streaming, checked against the expected SHA-1 (if any) and
+     * only then atomically moved onto the output path.
+     * <p>
+     * If a part file is left over from an interrupted download, it is resumed with an HTTP Range request instead of
+     * starting over. A part is only resumed if its contents can be proven to belong to the current remote file: either
+     * through the expected SHA-1, or through the validator (ETag or Last-Modified) saved when the part was started,
+     * which is sent back as If-Range so the server returns the whole file if it changed in the meantime.
+     * @param url The URL.
+     * @param file The output file.
+     * @param sha1 The expected SHA-1 of the file, or null if unknown.
+     * @return The number of bytes transferred over the network.
+     * @throws IOException If the download fails or doesn't match the expected hash.
+     */
+    public static long downloadAtomic(URL url, File file, String sha1) throws IOException {
+        return downloadAtomic(url, file, sha1, null);
+    }
+
+    /**
+     * Same as above, but if the output file already exists and cache metadata is given, the request is made conditional
+     * on the validators stored in the metadata. If the server answers 304, the file is kept and nothing is transferred.
+     * The metadata is updated (but not saved) to reflect the outcome.
+     * @param url The URL.
+     * @param file The output file.
+     * @param sha1 The expected SHA-1 of the file, or null if unknown.
+     * @param meta The cache metadata of the output file, or null to always download.
+     * @return The number of bytes transferred over the network, or {@link #NOT_MODIFIED}.
+     * @throws IOException If the download fails or doesn't match the expected hash.
+     */
+    public static long downloadAtomic(URL url, File file, String sha1, CacheMetadata meta) throws IOException {
+        File part = new File(file.getPath() + ".part");
+        File validatorFile = new File(file.getPath() + ".part.validator");
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+
+        String validator = validatorFile.exists() ? new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8) : null;
+        long offset = part.exists() && (sha1 != null || validator != null) ? part.length() : 0;
+
+        URLConnection connection = connect(url);
+        if (offset > 0 && connection instanceof HttpURLConnection) {
+            connection.setRequestProperty("Accept-Encoding", "identity"); // ranges of an encoded body can't be appended
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            if (sha1 == null) {
+                connection.setRequestProperty("If-Range", validator);
+            }
+        } else if (meta != null && file.exists()) {
+            meta.apply(connection);
+        }
+
+        boolean append = false;
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            int code = http.getResponseCode();
+
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+                drain(http.getInputStream());
+                meta.touch();
+                return NOT_MODIFIED;
+            }
+            if (code == 416 && offset > 0) {
+                // The part already holds the whole file; nothing left to transfer.
+                drain(http.getErrorStream());
+                finish(part, validatorFile, file, sha1, seed(sha1, part), url);
+                return 0;
+            }
+            check(http);
+            append = code == HttpURLConnection.HTTP_PARTIAL;
+
+            if (!append) {
+                String newValidator = getValidator(http);
+                if (newValidator != null) {
+                    Files.write(validatorFile.toPath(), newValidator.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    Files.deleteIfExists(validatorFile.toPath());
+                }
+            }
+        }
+
+        // When appending, the bytes already in the part go into the digest first, so it covers the whole file.
+        MessageDigest digest = append ? seed(sha1, part) : sha1 == null ? null : Util.sha1();
+        long transferred;
+        try (InputStream in = wrap(body(connection), digest); OutputStream out = new FileOutputStream(part, append)) {
+            transferred = copy(in, out);
+        }
+        finish(part, validatorFile, file, sha1, digest, url);
+        if (meta != null) {
+            meta.update(connection);
+        }
+        return transferred;
+    }
+
+    /**
+     * Verifies a completed part file and moves it onto the output path.
+     * @param digest The digest of the part's contents, or null if there is no expected SHA-1.
+     */
+    private static void finish(File part, File validatorFile, File file, String sha1, MessageDigest digest, URL url) throws IOException {
+        if (sha1 != null) {
+            String actual = Util.toHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha1)) {
+                Files.deleteIfExists(part.toPath());
+                Files.deleteIfExists(validatorFile.toPath());
+                throw new IOException("Hash mismatch for " + url + ": expected " + sha1 + ", got " + actual);
+            }
+        }
+
+        move(part, file);
+        Files.deleteIfExists(validatorFile.toPath());
+    }
+
+    /**
+     * Starts the digest of a resumed download with the bytes already in the part file.
+     * @param sha1 The expected SHA-1 of the file, or null if unknown.
+     * @param part The part file.
+     * @return The digest, or null if there is no expected SHA-1 to check against.
+     * @throws IOException
+     */
+    private static MessageDigest seed(String sha1, File part) throws IOException {
+        if (sha1 == null) {
+            return null;
+        }
+
+        MessageDigest digest = Util.sha1();
+        try (InputStream in = Files.newInputStream(part.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Gets the strongest validator the server sent for a response, used to make sure a resumed range belongs to the
+     * same version of the file.
+     * @param http The connection.
+     * @return The ETag if present, otherwise the Last-Modified date, otherwise null.
+     */
+    private static String getValidator(HttpURLConnection http) {
+        String etag = http.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) { // weak validators aren't allowed in If-Range
+            return etag;
+        }
+        return http.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Moves a file onto another, atomically where the file system supports it.
+     * @param from The source file.
+     * @param to The target file, replaced if it exists.
+     * @throws IOException
+     */
+    public static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Opens a connection to the URL. For HTTP connections, error responses are turned into exceptions after their body
+     * has been drained, so the underlying connection can still be reused.
+     * @param url The URL.
+     * @return The opened connection.
+     * @throws IOException
+     */
+    public static URLConnection open(URL url) throws IOException {
+        URLConnection connection = connect(url);
+        if (connection instanceof HttpURLConnection) {
+            check((HttpURLConnection) connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Checks whether a file exists at a URL, with a HEAD request for HTTP.
+     * @param url The URL.
+     * @return True if the server has the file.
+     * @throws IOException If the server can't be reached.
+     */
+    public static boolean exists(URL url) throws IOException {
+        URLConnection connection = connect(url);
+        if (!(connection instanceof HttpURLConnection)) {
+            return "file".equals(url.getProtocol()) && new File(url.getPath()).isFile();
+        }
+
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestMethod("HEAD");
+        try {
+            return http.getResponseCode() == HttpURLConnection.HTTP_OK;
+        } finally {
+            http.disconnect();
+        }
+    }
+
+    /**
+     * Creates a connection to the URL with ACP's timeouts, without sending the request yet.
+     * JSON files are requested gzip-compressed, since Mojang's metadata compresses very well.
+     * @param url The URL.
+     * @return The connection.
+     * @throws IOException
+     */
+    public static URLConnection connect(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (connection instanceof HttpURLConnection && url.getPath().endsWith(".json")) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        return connection;
+    }
+
+    /**
+     * Gets the response body of a connection, decoding it if the server gzip-compressed it.
+     * @param connection The connection.
+     * @return The decoded body.
+     * @throws IOException
+     */
+    public static InputStream body(URLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    /**
+     * Throws if the response is an HTTP error, draining the error body first.
+     * @param http The connection.
+     * @throws IOException
+     */
+    public static void check(HttpURLConnection http) throws IOException {
+        int code = http.getResponseCode();
+        if (code >= 400) {
+            drain(http.getErrorStream());
+            throw new IOException("Server returned HTTP " + code + " for " + http.getURL());
+        }
+    }
+
+    /**
+     * Copies a stream into another without flushing in between chunks.
+     * @param in The input stream.
+     * @param out The output stream.
+     * @return The number of bytes copied.
+     * @throws IOException
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int len;
+
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    /**
+     * A part of a remote file.
+     */
+    public static class ByteRange {
+        /**
+         * The bytes of the range.
+         */
+        public final byte[] data;
+        /**
+         * The position of the first byte within the file.
+         */
+        public final long start;
+        /**
+         * The length of the whole file, or -1 if the server didn't say.
+         */
+        public final long total;
+
+        public ByteRange(byte[] data, long start, long total) {
+            this.data = data;
+            this.start = start;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Consumes a response body as it is downloaded.
+     */
+    @FunctionalInterface
+    public interface BodyReader {
+        void read(InputStream in) throws IOException;
+    }
+
+    private static InputStream wrap(InputStream in, MessageDigest digest) {
+        return digest == null ? in : new DigestInputStream(in, digest);
+    }
+
+    /**
+     * Reads a stream to the end and closes it.
+     * @param in The stream, or null.
+     */
+    private static void drain(InputStream in) {
+        if (in == null) {
+            return;
+        }
+
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException ignored) {
+            // The connection won't be reused, nothing else to do.
+        }
+    }
+}
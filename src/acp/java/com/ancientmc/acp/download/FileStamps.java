@@ -0,0 +1,121 @@
+package com.ancientmc.acp.download;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A persisted record of files whose hash has already been verified, so they don't need to be hashed again while their
+ * size and modification time stay the same.
+ * The stamp file is formatted as such:
+ *      hash1 size1 lastModified1 path1
+ *      hash2 size2 lastModified2 path2
+ *      etc...
+ */
+public class FileStamps {
+    /**
+     * The stamp file.
+     */
+    private final File file;
+    /**
+     * The stamps, keyed by path.
+     */
+    private final ConcurrentMap<String, Stamp> stamps = new ConcurrentHashMap<>();
+
+    private FileStamps(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the stamps from a file. A missing or unreadable stamp file simply means nothing has been verified yet.
+     * @param file The stamp file.
+     * @return The stamps.
+     */
+    public static FileStamps load(File file) {
+        FileStamps stamps = new FileStamps(file);
+        if (file.exists()) {
+            try {
+                List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                for (String line : lines) {
+                    // split[0] = hash; split[1] = size; split[2] = last modified; split[3] = path (may contain spaces)
+                    String[] split = line.split(" ", 4);
+                    if (split.length == 4) {
+                        stamps.stamps.put(split[3], new Stamp(split[0], Long.parseLong(split[1]), Long.parseLong(split[2])));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                stamps.stamps.clear();
+            }
+        }
+        return stamps;
+    }
+
+    /**
+     * Checks whether a file was verified against the given hash and hasn't been touched since.
+     * @param path The path the file is stamped under.
+     * @param file The file on disk.
+     * @param hash The expected hash.
+     * @return True if the stamp still vouches for the file.
+     */
+    public boolean isCurrent(String path, File file, String hash) {
+        Stamp stamp = stamps.get(path);
+        return stamp != null && stamp.hash.equals(hash) && stamp.size == file.length() && stamp.lastModified == file.lastModified();
+    }
+
+    /**
+     * Records a file as verified against a hash, using its current size and modification time.
+     * @param path The path the file is stamped under.
+     * @param file The file on disk.
+     * @param hash The verified hash.
+     */
+    public void put(String path, File file, String hash) {
+        stamps.put(path, new Stamp(hash, file.length(), file.lastModified()));
+    }
+
+    /**
+     * Removes the stamp of a file.
+     * @param path The path the file is stamped under.
+     */
+    public void remove(String path) {
+        stamps.remove(path);
+    }
+
+    /**
+     * Writes the stamps back to the stamp file.
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Stamp> entry : new TreeMap<>(stamps).entrySet()) {
+                Stamp stamp = entry.getValue();
+                writer.write(stamp.hash + " " + stamp.size + " " + stamp.lastModified + " " + entry.getKey() + "\n");
+            }
+        }
+    }
+
+    private static class Stamp {
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+
+        private Stamp(String hash, long size, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.ancientmc.acp.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * The locations ACP downloads from, per endpoint type. Each endpoint has its upstream base URLs; mirrors configured in
+ * the workspace (HTTP or file: locations) are tried in front of them, and the fastest one that responds is used.
+ * <p>
+ * A mirror is laid out like the upstream it replaces, so upstream URLs (including the ones found inside downloaded
+ * JSONs) are rewritten by swapping their base.
+ */
+public class Mirrors implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The AncientMC maven, which hosts the ACP data.
+     */
+    public static final String MAVEN = "maven";
+    /**
+     * Mojang's launcher metadata and game downloads (version manifest, version JSONs, asset indexes, game JARs).
+     */
+    public static final String META = "meta";
+    /**
+     * Mojang's asset objects.
+     */
+    public static final String ASSETS = "assets";
+    /**
+     * Mojang's library repository, which hosts the natives.
+     */
+    public static final String LIBRARIES = "libraries";
+
+    /**
+     * The upstream base URLs of each endpoint.
+     */
+    private static final Map<String, List<String>> UPSTREAMS = new LinkedHashMap<>();
+    /**
+     * How long a mirror gets to respond to a probe, in milliseconds.
+     */
+    private static final int PROBE_TIMEOUT = 2_000;
+
+    static {
+        UPSTREAMS.put(MAVEN, Collections.singletonList("https://github.com/ancientmc/ancientmc-maven/raw/maven/"));
+        UPSTREAMS.put(META, Arrays.asList("https://piston-meta.mojang.com/", "https://piston-data.mojang.com/",
+                "https://launchermeta.mojang.com/", "https://launcher.mojang.com/"));
+        UPSTREAMS.put(ASSETS, Collections.singletonList("https://resources.download.minecraft.net/"));
+        UPSTREAMS.put(LIBRARIES, Collections.singletonList("https://libraries.minecraft.net/"));
+    }
+
+    /**
+     * The configured mirrors of each endpoint, in order of preference.
+     */
+    private final Map<String, List<String>> mirrors = new LinkedHashMap<>();
+
+    /**
+     * @param mirrors The configured mirrors, keyed by endpoint type. Endpoints without mirrors use their upstream.
+     */
+    public Mirrors(Map<String, List<String>> mirrors) {
+        mirrors.forEach((endpoint, bases) -> {
+            if (!UPSTREAMS.containsKey(endpoint)) {
+                throw new IllegalArgumentException("Unknown mirror endpoint " + endpoint + ", expected one of " + UPSTREAMS.keySet());
+            }
+            if (!bases.isEmpty()) {
+                this.mirrors.put(endpoint, bases.stream().map(Mirrors::normalize).collect(Collectors.toList()));
+            }
+        });
+    }
+
+    /**
+     * Rewrites an upstream URL to the fastest mirror of its endpoint. URLs that don't belong to any endpoint, or whose
+     * endpoint has no mirrors, are returned unchanged. So are URLs whose file is missing from a file: mirror, since a
+     * local mirror is often only a partial copy of its upstream.
+     * @param url The upstream URL.
+     * @param downloads The download service, which remembers probe results for the build.
+     * @return The URL to download from.
+     * @throws MalformedURLException
+     */
+    public URL resolve(URL url, DownloadService downloads) throws MalformedURLException {
+        String spec = url.toString();
+        for (Map.Entry<String, List<String>> entry : UPSTREAMS.entrySet()) {
+            if (!mirrors.containsKey(entry.getKey())) {
+                continue;
+            }
+            for (String upstream : entry.getValue()) {
+                if (spec.startsWith(upstream)) {
+                    URL mirrored = new URL(getBase(entry.getKey(), upstream, downloads) + spec.substring(upstream.length()));
+                    return isMissing(mirrored) ? url : mirrored;
+                }
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Picks the base to use for an endpoint. The upstream is always the last candidate, so a build still works if no
+     * mirror is reachable.
+     */
+    private String getBase(String endpoint, String upstream, DownloadService downloads) {
+        List<String> candidates = new ArrayList<>(mirrors.getOrDefault(endpoint, Collections.emptyList()));
+        if (candidates.isEmpty()) {
+            return upstream;
+        }
+        candidates.add(upstream);
+        return downloads.selectMirror(candidates);
+    }
+
+    /**
+     * Probes every candidate at once and returns the first one that answers, without waiting for the slower ones. HTTP
+     * candidates are sent a HEAD request and count as up if they answer at all below a server error; file: candidates
+     * count as up if the directory exists. If nothing answers, the first candidate is returned, so the actual download
+     * reports the failure.
+     * @param candidates The base URLs, in order of preference.
+     * @return The fastest base URL.
+     */
+    public static String probe(List<String> candidates) {
+        ExecutorService executor = Executors.newFixedThreadPool(candidates.size(), new ProbeThreadFactory());
+        CompletableFuture<String> fastest = new CompletableFuture<>();
+        try {
+            CompletableFuture<?>[] probes = candidates.stream()
+                    .map(base -> CompletableFuture.runAsync(() -> {
+                        if (getLatency(base) != Long.MAX_VALUE) {
+                            fastest.complete(base);
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(probes).thenRun(() -> fastest.complete(candidates.get(0)));
+            return fastest.join();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The time a base URL took to respond in nanoseconds, or Long.MAX_VALUE if it didn't.
+     */
+    private static long getLatency(String base) {
+        long start = System.nanoTime();
+        try {
+            URL url = new URL(base);
+            if (url.getProtocol().equals("file")) {
+                return new File(url.toURI()).isDirectory() ? 0 : Long.MAX_VALUE;
+            }
+
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(PROBE_TIMEOUT);
+            connection.setReadTimeout(PROBE_TIMEOUT);
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection) connection;
+                http.setRequestMethod("HEAD");
+                int code = http.getResponseCode();
+                http.disconnect();
+                return code < 500 ? System.nanoTime() - start : Long.MAX_VALUE;
+            }
+            connection.connect();
+            return System.nanoTime() - start;
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return Whether a URL points to a file: location that doesn't exist.
+     */
+    private static boolean isMissing(URL url) {
+        if (!url.getProtocol().equals("file")) {
+            return false;
+        }
+        try {
+            return !new File(url.toURI()).exists();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String normalize(String base) {
+        return base.endsWith("/") ? base : base + '/';
+    }
+
+    /**
+     * Names the probe threads and makes them daemons, so a probe that outlives the winner never keeps Gradle alive.
+     */
+    private static class ProbeThreadFactory implements ThreadFactory {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "acp-mirror-probe-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
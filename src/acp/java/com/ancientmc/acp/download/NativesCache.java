@@ -0,0 +1,164 @@
+package com.ancientmc.acp.download;
+
+import com.ancientmc.acp.util.Util;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracted LWJGL natives, shared by every ACP workspace on the machine. Each operating system and LWJGL version gets
+ * its own directory, which is filled once and then linked into workspaces.
+ * <p>
+ * The native JARs are never written to disk: each one is unpacked while it downloads, without its META-INF signature
+ * files. A directory only counts as complete once its marker file lists the exact JARs it was extracted from, so an
+ * interrupted extraction is redone from scratch.
+ */
+public class NativesCache {
+    /**
+     * In-process monitors for each cache directory, see {@link AssetStore}.
+     */
+    private static final ConcurrentMap<String, Object> MONITORS = new ConcurrentHashMap<>();
+    /**
+     * The name of the marker file.
+     */
+    private static final String MARKER = ".complete";
+    /**
+     * The name of the lock file.
+     */
+    private static final String LOCK = ".lock";
+
+    /**
+     * The cache directory for this operating system and LWJGL version.
+     */
+    private final File dir;
+    /**
+     * The download service the JARs are streamed through.
+     */
+    private final DownloadService downloads;
+    /**
+     * The mirrors the JARs are streamed from. The cache itself is keyed by the upstream URLs, so switching mirrors
+     * doesn't invalidate it.
+     */
+    private final Mirrors mirrors;
+
+    /**
+     * @param root The root directory of the natives cache.
+     * @param os The operating system name.
+     * @param version The LWJGL version.
+     * @param downloads The download service the JARs are streamed through.
+     * @param mirrors The mirrors the JARs are streamed from.
+     */
+    public NativesCache(File root, String os, String version, DownloadService downloads, Mirrors mirrors) {
+        this.dir = new File(root, os + '-' + version + '/');
+        this.downloads = downloads;
+        this.mirrors = mirrors;
+    }
+
+    /**
+     * Makes sure the natives of the given JARs are in the cache, downloading and extracting them if needed.
+     * @param urls The upstream URLs of the native JARs.
+     * @return The cache directory.
+     * @throws IOException
+     */
+    public File get(List<URL> urls) throws IOException {
+        String expected = urls.stream().map(URL::toString).collect(Collectors.joining("\n"));
+        if (isComplete(expected)) {
+            return dir;
+        }
+
+        FileUtils.forceMkdir(dir);
+        synchronized (MONITORS.computeIfAbsent(dir.getAbsolutePath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                // Another process may have filled it while we were waiting for the lock.
+                if (isComplete(expected)) {
+                    return dir;
+                }
+
+                File[] stale = dir.listFiles(file -> !file.getName().equals(LOCK));
+                if (stale != null) {
+                    for (File file : stale) {
+                        FileUtils.forceDelete(file);
+                    }
+                }
+
+                for (URL url : urls) {
+                    downloads.stream(mirrors.resolve(url, downloads), in -> extract(in, dir));
+                }
+                Files.write(new File(dir, MARKER).toPath(), expected.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Links the natives of the given JARs into a directory. Files that are already there with the right size are kept.
+     * @param urls The URLs of the native JARs.
+     * @param output The natives directory of the workspace.
+     * @throws IOException
+     */
+    public void install(List<URL> urls, File output) throws IOException {
+        File cached = get(urls);
+        File[] files = cached.listFiles(file -> file.isFile() && !file.getName().equals(LOCK) && !file.getName().equals(MARKER));
+        if (files == null) {
+            return;
+        }
+
+        FileUtils.forceMkdir(output);
+        for (File file : files) {
+            File target = new File(output, file.getName());
+            if (!target.isFile() || target.length() != file.length()) {
+                Util.link(file, target);
+            }
+        }
+    }
+
+    private boolean isComplete(String expected) throws IOException {
+        File marker = new File(dir, MARKER);
+        return marker.isFile() && new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).equals(expected);
+    }
+
+    /**
+     * Unpacks a native JAR as it is read, skipping directories and META-INF.
+     */
+    private static void extract(InputStream in, File dir) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        String root = dir.getCanonicalPath() + File.separator;
+        ZipEntry entry;
+
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory() || entry.getName().startsWith("META-INF/")) {
+                continue;
+            }
+
+            // Natives are flat, so entries are placed by their file name alone.
+            String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            File file = new File(dir, name);
+            if (!file.getCanonicalPath().startsWith(root)) {
+                throw new IOException("Invalid native entry " + entry.getName());
+            }
+
+            File part = new File(file.getPath() + ".part");
+            try (OutputStream out = new FileOutputStream(part)) {
+                Downloads.copy(zip, out);
+            }
+            Downloads.move(part, file);
+        }
+    }
+}
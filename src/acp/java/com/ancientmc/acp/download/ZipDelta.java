@@ -0,0 +1,297 @@
+package com.ancientmc.acp.download;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Brings a directory extracted from a remote zip up to date with a newer version of that zip, without downloading the
+ * whole archive. Only the central directory is read (through HTTP Range requests), its CRCs are compared with the local
+ * files, and only the entries that differ are fetched.
+ * <p>
+ * Servers that ignore ranges, as well as ZIP64 archives, aren't supported; callers fall back to a full download when
+ * {@link #sync} throws.
+ */
+public class ZipDelta {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    /**
+     * The end of central directory record is 22 bytes, followed by a comment of up to 64KB.
+     */
+    private static final int EOCD_SEARCH = 22 + 0xFFFF;
+
+    /**
+     * Syncs a directory with a remote zip.
+     * @param url The URL of the zip.
+     * @param dir The directory the zip was extracted into.
+     * @param previous The entries of the previously extracted version, or null if unknown. Entries that are listed here
+     *                 but no longer in the zip are deleted.
+     * @param downloads The download service.
+     * @return The result of the sync.
+     * @throws IOException If the delta can't be applied; the directory may then be partially updated, but every file
+     * in it is either the old or the new version.
+     */
+    public static Result sync(URL url, File dir, Collection<String> previous, DownloadService downloads) throws IOException {
+        Downloads.ByteRange tail = downloads.readRange(url, -EOCD_SEARCH, -1);
+        ByteBuffer eocd = findEndOfCentralDirectory(tail.data);
+        long cdSize = eocd.getInt(12) & 0xFFFFFFFFL;
+        long cdOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+        if (cdOffset == 0xFFFFFFFFL || cdSize == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives aren't supported: " + url);
+        }
+
+        // The central directory usually sits right before the record, in which case the tail already contains it.
+        ByteBuffer cd;
+        if (cdOffset >= tail.start && cdOffset + cdSize <= tail.start + tail.data.length) {
+            cd = slice(tail.data, (int) (cdOffset - tail.start), (int) cdSize);
+        } else {
+            cd = slice(downloads.readRange(url, cdOffset, cdOffset + cdSize - 1).data, 0, (int) cdSize);
+        }
+        List<Entry> entries = readCentralDirectory(cd);
+
+        // Entries are stored one after another, so each one ends where the next begins.
+        entries.sort(Comparator.comparingLong(entry -> entry.offset));
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).end = i + 1 < entries.size() ? entries.get(i + 1).offset : cdOffset;
+        }
+
+        List<Entry> changed = new ArrayList<>();
+        String root = dir.getCanonicalPath() + File.separator;
+        for (Entry entry : entries) {
+            File file = new File(dir, entry.name);
+            if (!file.getCanonicalPath().startsWith(root)) {
+                throw new IOException("Invalid entry " + entry.name);
+            }
+            if (entry.isDirectory()) {
+                FileUtils.forceMkdir(file);
+            } else if (!isCurrent(file, entry)) {
+                changed.add(entry);
+            }
+        }
+
+        // Adjacent changed entries are fetched with a single request.
+        long transferred = 0;
+        for (int i = 0; i < changed.size(); ) {
+            int j = i + 1;
+            while (j < changed.size() && changed.get(j).offset == changed.get(j - 1).end) {
+                j++;
+            }
+            Entry first = changed.get(i);
+            Entry last = changed.get(j - 1);
+            Downloads.ByteRange run = downloads.readRange(url, first.offset, last.end - 1);
+            transferred += run.data.length;
+            for (Entry entry : changed.subList(i, j)) {
+                extract(run, entry, new File(dir, entry.name));
+            }
+            i = j;
+        }
+
+        List<String> names = new ArrayList<>();
+        entries.forEach(entry -> names.add(entry.name));
+        Set<String> current = new HashSet<>(names);
+        int removed = 0;
+        if (previous != null) {
+            for (String name : previous) {
+                File file = new File(dir, name);
+                if (!current.contains(name) && file.isFile()) {
+                    Files.delete(file.toPath());
+                    removed++;
+                }
+            }
+        }
+
+        return new Result(names, changed.size(), removed, transferred);
+    }
+
+    private static ByteBuffer findEndOfCentralDirectory(byte[] tail) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tail.length - 22; i >= 0; i--) {
+            if (buffer.getInt(i) == EOCD_SIGNATURE) {
+                return slice(tail, i, tail.length - i);
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    private static List<Entry> readCentralDirectory(ByteBuffer cd) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int pos = 0;
+        while (pos + 46 <= cd.limit()) {
+            if (cd.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupt central directory");
+            }
+            int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                name[i] = cd.get(pos + 46 + i);
+            }
+
+            Entry entry = new Entry();
+            entry.name = new String(name, StandardCharsets.UTF_8);
+            entry.method = cd.getShort(pos + 10) & 0xFFFF;
+            entry.crc = cd.getInt(pos + 16) & 0xFFFFFFFFL;
+            entry.compressedSize = cd.getInt(pos + 20) & 0xFFFFFFFFL;
+            entry.size = cd.getInt(pos + 24) & 0xFFFFFFFFL;
+            entry.offset = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+            entries.add(entry);
+
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Checks a local file against an entry, by size first and CRC only if the size matches.
+     */
+    private static boolean isCurrent(File file, Entry entry) throws IOException {
+        if (!file.isFile() || file.length() != entry.size) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[Downloads.BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, len);
+            }
+        }
+        return crc.getValue() == entry.crc;
+    }
+
+    /**
+     * Decompresses an entry out of a fetched range and writes it to its file atomically, after checking its CRC.
+     */
+    private static void extract(Downloads.ByteRange run, Entry entry, File file) throws IOException {
+        ByteBuffer local = ByteBuffer.wrap(run.data).order(ByteOrder.LITTLE_ENDIAN);
+        int pos = (int) (entry.offset - run.start);
+        if (local.getInt(pos) != LOCAL_SIGNATURE) {
+            throw new IOException("Corrupt local header for " + entry.name);
+        }
+        int data = pos + 30 + (local.getShort(pos + 26) & 0xFFFF) + (local.getShort(pos + 28) & 0xFFFF);
+
+        byte[] content;
+        if (entry.method == 0) {
+            content = new byte[(int) entry.size];
+            System.arraycopy(run.data, data, content, 0, content.length);
+        } else if (entry.method == 8) {
+            content = new byte[(int) entry.size];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(run.data, data, (int) entry.compressedSize);
+                int total = 0;
+                while (total < content.length && !inflater.finished()) {
+                    int len = inflater.inflate(content, total, content.length - total);
+                    if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    total += len;
+                }
+                if (total != content.length) {
+                    throw new IOException("Truncated entry " + entry.name);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt entry " + entry.name, e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (crc.getValue() != entry.crc) {
+            throw new IOException("CRC mismatch for " + entry.name);
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+        File part = new File(file.getPath() + ".part");
+        try (OutputStream out = new FileOutputStream(part)) {
+            out.write(content);
+        }
+        Downloads.move(part, file);
+    }
+
+    private static ByteBuffer slice(byte[] data, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length).slice();
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * A file entry from the central directory.
+     */
+    private static class Entry {
+        private String name;
+        private int method;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        /**
+         * The position of the entry's local header.
+         */
+        private long offset;
+        /**
+         * The position right after the entry's data.
+         */
+        private long end;
+
+        private boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * The outcome of a sync.
+     */
+    public static class Result {
+        /**
+         * The entries of the zip.
+         */
+        public final List<String> entries;
+        /**
+         * The number of entries that were fetched.
+         */
+        public final int changed;
+        /**
+         * The number of files deleted because they are no longer in the zip.
+         */
+        public final int removed;
+        /**
+         * The number of bytes fetched for changed entries.
+         */
+        public final long transferred;
+
+        private Result(List<String> entries, int changed, int removed, long transferred) {
+            this.entries = entries;
+            this.changed = changed;
+            this.removed = removed;
+            this.transferred = transferred;
+        }
+    }
+}
@@ -1,40 +1,70 @@
 package com.ancientmc.acp.init.step;
 
+import com.ancientmc.acp.download.AssetStore;
+import com.ancientmc.acp.download.DownloadQueue;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.FileStamps;
+import com.ancientmc.acp.download.Mirrors;
 import com.ancientmc.acp.util.Json;
-import com.google.gson.JsonObject;
+import com.ancientmc.acp.util.Util;
+import com.google.gson.stream.JsonReader;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.logging.Logger;
 
 import java.io.*;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This step downloads the asset files. Instead of downloading the asset hashes in their pure forms, it goes the extra mile
  * and converts those hash files into the actual resource files used by the game.
+ * The objects themselves are kept in the shared {@link AssetStore}; the resource files are links into it.
+ * <p>
+ * The step is incremental: every entry of the index is checked against what is on disk, and only missing or corrupt
+ * files are fetched again. Files that were verified before and haven't changed since are vouched for by a stamp file,
+ * so they aren't rehashed every time the project is configured.
  */
 public class DownloadAssetsStep extends Step {
+    /**
+     * The upstream base URL of the asset objects.
+     */
+    private static final String OBJECTS_URL = "https://resources.download.minecraft.net/";
+
     /**
      * The URL for the index file containing a map of resource files and their hash values.
      * The URL is retrieved from a method in the Json utilities class.
-     * @see Json#getAssetIndexUrl(File)
+     * @see Json#getAssetIndexUrl(com.ancientmc.acp.util.VersionMetadata)
      */
     private URL index;
     /**
      * The output file containing the resources. Specifically, this is the "run" directory in the ACP workspace.
      */
     private File output;
+    /**
+     * The maximum number of assets downloaded at once.
+     */
+    private int threads = 1;
+    /**
+     * The shared asset store that the resource files are linked from.
+     */
+    private AssetStore store;
+    /**
+     * The shared download service, used for the index itself.
+     */
+    private DownloadService downloads;
+    /**
+     * The mirrors the index and the objects are downloaded from.
+     */
+    private Mirrors mirrors;
 
     /**
-     * Since asset downloading is more complicated, this method merely downloads the asset index file from the URL.
+     * Downloads the asset index file from the URL if needed, and then brings the resources directory in line with it.
+     * The message is only printed if any asset actually needs to be fetched.
      * @param logger The gradle logger.
      * @param condition Boolean condition that determines if the step gets executed.
      */
     @Override
     public void exec(Logger logger, boolean condition) {
-        super.exec(logger, condition);
-
         if (condition) {
             try {
 
@@ -46,77 +76,127 @@ public class DownloadAssetsStep extends Step {
                 File file = new File(output, path);
 
                 if (!file.exists()) {
-                    FileUtils.copyURLToFile(index, file);
+                    addDownloaded(downloads.downloadAtomic(mirrors.resolve(index, downloads), file, null, null));
+                }
+                String objects = mirrors.resolve(new URL(OBJECTS_URL), downloads).toString();
+
+                File resources = new File(output, "resources/");
+                FileStamps stamps = FileStamps.load(new File(output, path.replace(".json", "") + ".stamp"));
+                if (!resources.exists()) {
+                    FileUtils.forceMkdir(resources);
                 }
 
-                getAssets(file, output);
+                // Assets are queued while the index is still being read, so downloads start right away and the index
+                // never has to be held in memory as a whole.
+                DownloadQueue queue = new DownloadQueue(threads);
+                boolean[] pending = { false };
+                try {
+                    readAssets(file, (name, asset) -> {
+                        File dest = new File(resources, name);
+                        if (isPending(name, asset, dest, stamps)) {
+                            if (!pending[0]) {
+                                printMessage(logger, message, true);
+                                pending[0] = true;
+                            }
+                            submit(queue, name, asset, dest, objects, store, stamps);
+                        }
+                    });
+                } finally {
+                    try {
+                        queue.await();
+                    } finally {
+                        stamps.save();
+                    }
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
         }
     }
 
     /**
-     * Creates a hash map of all the assets.
+     * Reads the asset index entry by entry, handing each asset over as soon as it is read.
      * @param index The asset index file.
-     * @param output The "run" directory in the ACP workspace.
+     * @param consumer Receives each asset along with its resource path.
      * @throws IOException
      */
-    public static void getAssets(File index, File output) throws IOException {
-        JsonObject indexObj = Json.get(index);
-        Map<String, String> assets = new HashMap<>();
-        JsonObject objects = indexObj.getAsJsonObject("objects");
-
-        objects.keySet().forEach(name -> {
-            String hash = objects.getAsJsonObject(name).get("hash").getAsString();
-            assets.put(name, hash);
-        });
-        downloadAssets(assets, new File(output, "resources/"));
-    }
+    public static void readAssets(File index, AssetConsumer consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("objects")) {
+                    reader.skipValue();
+                    continue;
+                }
 
-    /**
-     * Gets each asset from the hash map and sets it up for downloading.
-     * Each URL of a hash representing an asset is collected and written as a new file using its proper name.
-     * @param map The hash map containing the assets.
-     * @param dest The "run\resources" directory path in the ACP workspace.
-     * @throws IOException
-     */
-    public static void downloadAssets(Map<String, String> map, File dest) throws IOException {
-        if(!dest.exists()) {
-            FileUtils.forceMkdir(dest);
-        }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    String hash = null;
+                    long size = -1;
 
-        map.forEach((key, value) -> {
-            try {
-                String path = value.substring(0, 2) + '/' + value;
-                String url = "https://resources.download.minecraft.net/" + path;
-                File file = new File(dest, key);
-                if(!file.getParentFile().exists()) {
-                    FileUtils.forceMkdir(file.getParentFile());
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "hash":
+                                hash = reader.nextString();
+                                break;
+                            case "size":
+                                size = reader.nextLong();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    consumer.accept(name, new Asset(hash, size));
                 }
-                writeToFile(new URL(url).openStream(), new FileOutputStream(file));
-            } catch (IOException e) {
-                e.printStackTrace();
+                reader.endObject();
             }
-        });
+            reader.endObject();
+        }
+    }
+
+    /**
+     * Checks whether an asset may need to be fetched, using only cheap checks: the file is missing, its size is wrong,
+     * or it has no current stamp. Whether a candidate's contents are actually wrong is decided later, off this thread.
+     * @param name The resource path of the asset.
+     * @param asset The asset.
+     * @param file The asset's file in the "run\resources" directory.
+     * @param stamps The verified-file stamps.
+     * @return True if the asset is a candidate.
+     */
+    public static boolean isPending(String name, Asset asset, File file, FileStamps stamps) {
+        return !file.isFile() || file.length() != asset.size || !stamps.isCurrent(name, file, asset.hash);
     }
 
     /**
-     * Writes an input URL of an asset hash to a file with its proper name.
-     * @param in The input asset hash URL on Minecraft's website.
-     * @param out The output file in the "run\resources" directory.
+     * Queues the installation of a single asset.
+     * An existing file that already matches its hash is only stamped; anything else is fetched into the shared store
+     * if it isn't there yet, and then linked into the workspace using its proper name. A failed asset doesn't abort the
+     * others; every failure is reported together once the queue has drained.
+     * @param queue The download queue.
+     * @param name The resource path of the asset.
+     * @param asset The asset.
+     * @param file The asset's file in the "run\resources" directory.
+     * @param objects The base URL of the asset objects.
+     * @param store The shared asset store.
+     * @param stamps The verified-file stamps, updated for every asset that ends up correct on disk.
      * @throws IOException
      */
-    public static void writeToFile(InputStream in, OutputStream out) throws IOException {
-        byte[] b = new byte[1024];
-        int len;
+    public static void submit(DownloadQueue queue, String name, Asset asset, File file, String objects, AssetStore store, FileStamps stamps) throws IOException {
+        String hash = asset.hash;
+        long size = asset.size;
+        URL url = new URL(objects + hash.substring(0, 2) + '/' + hash);
 
-        while ((len = in.read(b)) > 0) {
-            out.write(b, 0, len);
-            out.flush();
-        }
-        in.close();
-        out.close();
+        queue.submit(name, () -> {
+            stamps.remove(name);
+            if (!file.isFile() || file.length() != size || !Util.sha1(file).equals(hash)) {
+                store.install(hash, url, file);
+            }
+            stamps.put(name, file, hash);
+        });
     }
 
     public File getOutput() {
@@ -132,4 +212,51 @@ public class DownloadAssetsStep extends Step {
         this.output = output;
         return this;
     }
+
+    public DownloadAssetsStep setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public DownloadAssetsStep setStore(AssetStore store) {
+        this.store = store;
+        return this;
+    }
+
+    public DownloadAssetsStep setDownloads(DownloadService downloads) {
+        this.downloads = downloads;
+        return this;
+    }
+
+    public DownloadAssetsStep setMirrors(Mirrors mirrors) {
+        this.mirrors = mirrors;
+        return this;
+    }
+
+    /**
+     * Receives the entries of the asset index as they are read.
+     */
+    @FunctionalInterface
+    public interface AssetConsumer {
+        void accept(String name, Asset asset) throws IOException;
+    }
+
+    /**
+     * A single entry of the asset index.
+     */
+    public static class Asset {
+        /**
+         * The SHA-1 of the asset.
+         */
+        public final String hash;
+        /**
+         * The size of the asset in bytes.
+         */
+        public final long size;
+
+        public Asset(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
 }
@@ -1,14 +1,20 @@
 package com.ancientmc.acp.init.step;
 
-import org.apache.commons.io.FileUtils;
+import com.ancientmc.acp.download.CacheMetadata;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Downloads;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Downloads a file from a URL link.
+ * Downloads a file from a URL link. The file only appears at the output path once it is complete (and matches its SHA-1,
+ * if one is known), so an interrupted download never leaves a truncated file behind for later steps to pick up.
  */
 public class DownloadFileStep extends Step {
     /**
@@ -19,29 +25,72 @@ public class DownloadFileStep extends Step {
      * The downloaded file.
      */
     protected File output;
+    /**
+     * The expected SHA-1 of the downloaded file, or null if unknown.
+     */
+    protected String sha1;
+    /**
+     * How long, in milliseconds, an existing file is used without revalidating it. Negative if the file is never
+     * revalidated.
+     */
+    protected long ttl = -1;
+    /**
+     * Whether the last execution changed the file on disk.
+     */
+    protected boolean updated;
+    /**
+     * The shared download service.
+     */
+    protected DownloadService downloads;
 
     /**
-     * This method uses a function from Apache Commons-IO to download a file from a URL.
+     * Downloads the file from the URL, resuming a previously interrupted download if possible.
+     * <p>
+     * If a TTL is set, an existing file is kept until its last check is older than the TTL, and then revalidated with a
+     * conditional request using the ETag/Last-Modified stored next to it (see {@link CacheMetadata}).
+     * @see DownloadService#downloadAtomic(URL, File, String, CacheMetadata)
      * @param logger The gradle logger.
      * @param condition Boolean condition that determines if the step gets executed.
      */
     @Override
     public void exec(Logger logger, boolean condition) {
+        CacheMetadata meta = ttl >= 0 ? CacheMetadata.of(output) : null;
+        if (meta != null && output.exists() && meta.isFresh(input, ttl)) {
+            condition = false;
+        }
+
         super.exec(logger, condition);
+        updated = false;
 
         if (condition) {
             try {
-                FileUtils.copyURLToFile(input, output);
+                updated = addDownloaded(downloads.downloadAtomic(input, output, sha1, meta)) != Downloads.NOT_MODIFIED;
+                if (meta != null) {
+                    meta.save();
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
         }
     }
 
+    /**
+     * @return True if the last execution downloaded a new version of the file, false if it was skipped or the server
+     * confirmed that the existing file is current.
+     */
+    public boolean isUpdated() {
+        return updated;
+    }
+
     public File getOutput() {
         return output;
     }
 
+    @Override
+    public List<Object> getParameters() {
+        return Arrays.asList(input, sha1);
+    }
+
     public DownloadFileStep setInput(URL input) {
         this.input = input;
         return this;
@@ -51,4 +100,25 @@ public class DownloadFileStep extends Step {
         this.output = output;
         return this;
     }
+
+    public DownloadFileStep setSha1(String sha1) {
+        this.sha1 = sha1;
+        return this;
+    }
+
+    public DownloadFileStep setDownloads(DownloadService downloads) {
+        this.downloads = downloads;
+        return this;
+    }
+
+    public DownloadFileStep setTtl(long ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    @Override
+    public DownloadFileStep setMessage(String message) {
+        super.setMessage(message);
+        return this;
+    }
 }
@@ -1,12 +1,15 @@
 package com.ancientmc.acp.init.step;
 
+import com.ancientmc.acp.download.DownloadService;
 import com.ancientmc.acp.util.Json;
-import org.apache.commons.io.FileUtils;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Extension of the DownloadFile step that allows for extra configuration for jar downloading.
@@ -21,7 +24,7 @@ public class DownloadJarStep extends DownloadFileStep {
      * This method parses through the JSON file to find the jar URL. The URL is retrieved via a method in the Json utilities class.
      * @param logger The gradle logger.
      * @param condition Boolean condition that determines if the step gets executed.
-     * @see Json#getJarUrl(File, String)
+     * @see Json#getJarUrl(com.ancientmc.acp.util.VersionMetadata, String)
      */
     @Override
     public void exec(Logger logger, boolean condition) {
@@ -29,14 +32,28 @@ public class DownloadJarStep extends DownloadFileStep {
 
         if (condition) {
             try {
-                File jar = new File(output, version + (input.getPath().contains("client") ? ".jar" : "-server.jar"));
-                FileUtils.copyURLToFile(input, jar);
+                File jar = getJar();
+                addDownloaded(downloads.downloadAtomic(input, jar, sha1, null));
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
         }
     }
 
+    /**
+     * The output is the directory the jar is put into, but only the jar itself is written by this step.
+     * @return The jar file.
+     */
+    @Override
+    public Set<File> getOutputs() {
+        return Collections.singleton(getJar());
+    }
+
+    private File getJar() {
+        String name = input == null || input.getPath().contains("client") ? ".jar" : "-server.jar";
+        return new File(output, version + name);
+    }
+
     public DownloadJarStep setVersion(String version) {
         this.version = version;
         return this;
@@ -51,4 +68,20 @@ public class DownloadJarStep extends DownloadFileStep {
         super.setOutput(output);
         return this;
     }
+
+    public DownloadJarStep setDownloads(DownloadService downloads) {
+        super.setDownloads(downloads);
+        return this;
+    }
+
+    public DownloadJarStep setSha1(String sha1) {
+        super.setSha1(sha1);
+        return this;
+    }
+
+    @Override
+    public DownloadJarStep setMessage(String message) {
+        super.setMessage(message);
+        return this;
+    }
 }
@@ -1,9 +1,23 @@
 package com.ancientmc.acp.init.step;
 
-import org.gradle.api.Project;
+import com.ancientmc.acp.download.Downloads;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /**
  * Extracts a single archive file.
@@ -18,32 +32,79 @@ public class ExtractFileStep extends Step {
      */
     private File output;
     /**
-     * The Gradle project.
+     * The entries extracted by the last execution.
      */
-    private Project project;
+    private final List<String> entries = new ArrayList<>();
 
     /**
-     * Main extraction method. Uses Gradle's copy task and zip-tree function.
+     * Main extraction method. Each file is written next to its final path first and then moved in place, so an
+     * interrupted extraction never leaves a truncated file behind.
      * @param logger The gradle logger.
      * @param condition Boolean condition that determines if the step gets executed.
      */
     @Override
     public void exec(Logger logger, boolean condition) {
         super.exec(logger, condition);
-        if (condition) {
-            project.copy(action -> {
-                action.from(project.zipTree(input));
-                action.into(output);
-            });
+        entries.clear();
+        if (!condition) {
+            return;
+        }
+
+        try (InputStream in = new FileInputStream(input)) {
+            ZipInputStream zip = new ZipInputStream(in);
+            String root = output.getCanonicalPath() + File.separator;
+            ZipEntry entry;
+
+            while ((entry = zip.getNextEntry()) != null) {
+                File file = new File(output, entry.getName());
+                if (!file.getCanonicalPath().startsWith(root)) {
+                    throw new IOException("Invalid entry " + entry.getName());
+                }
+                entries.add(entry.getName());
+
+                if (entry.isDirectory()) {
+                    FileUtils.forceMkdir(file);
+                    continue;
+                }
+
+                FileUtils.forceMkdirParent(file);
+                File part = new File(file.getPath() + ".part");
+                try (OutputStream out = new FileOutputStream(part)) {
+                    Downloads.copy(zip, out);
+                }
+                Downloads.move(part, file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * @return The names of the entries extracted by the last execution.
+     */
+    public List<String> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
     public File getOutput() {
         return output;
     }
 
+    /**
+     * The output is the directory the archive is extracted into, which other files may share, but only the extracted
+     * files are written by this step.
+     * @return The files extracted by the last execution.
+     */
+    @Override
+    public Set<File> getOutputs() {
+        Set<File> files = new LinkedHashSet<>();
+        entries.forEach(entry -> files.add(new File(output, entry)));
+        return files;
+    }
+
     public ExtractFileStep setInput(File input) {
         this.input = input;
+        addInputs(input);
         return this;
     }
 
@@ -52,8 +113,9 @@ public class ExtractFileStep extends Step {
         return this;
     }
 
-    public ExtractFileStep setProject(Project project) {
-        this.project = project;
+    @Override
+    public ExtractFileStep setMessage(String message) {
+        super.setMessage(message);
         return this;
     }
 }
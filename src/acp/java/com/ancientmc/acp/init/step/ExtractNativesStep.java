@@ -1,23 +1,24 @@
 package com.ancientmc.acp.init.step;
 
+import com.ancientmc.acp.download.NativesCache;
 import com.ancientmc.acp.util.Json;
-import org.apache.commons.io.FileUtils;
-import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Extracts native libraries required for Minecraft to run into the designated folder.
+ * Extracts native libraries required for Minecraft to run into the designated folder. The natives come from the shared
+ * {@link NativesCache}, so they are only downloaded and extracted once per machine.
  */
 public class ExtractNativesStep extends Step {
     /**
      * The list of URLs for native libraries from Minecraft's website. The URLs are retrieved via a method in utils.Json
-     * @see Json#getNativeUrls(File)
+     * @see Json#getNativeUrls(com.ancientmc.acp.util.VersionMetadata)
      */
     private List<URL> urls;
     /**
@@ -25,13 +26,13 @@ public class ExtractNativesStep extends Step {
      */
     private File output;
     /**
-     * The gradle project.
+     * The shared natives cache.
      */
-    private Project project;
+    private NativesCache cache;
 
     /**
-     * To extract the natives, we first download the JAR files in the URLS. Then for each file, we extract the native libraries
-     * from their JAR files into the output folder.
+     * To extract the natives, the JAR files in the URLs are streamed into the cache, which unpacks them on the fly. The
+     * extracted natives are then linked from the cache into the output folder.
      * @param logger The gradle logger.
      * @param condition Boolean condition that determines if the step gets executed.
      */
@@ -40,21 +41,9 @@ public class ExtractNativesStep extends Step {
         super.exec(logger, condition);
         if (condition) {
             try {
-                List<File> jars = new ArrayList<>();
-                for(URL url : urls) {
-                    String path = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
-                    FileUtils.copyURLToFile(url, new File(output, path));
-                    jars.add(new File(output, path));
-                }
-
-                jars.forEach(jar -> {
-                    project.copy(action -> {
-                        action.from(project.zipTree(jar));
-                        action.into(project.file(output));
-                    });
-                });
+                cache.install(urls, output);
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
         }
     }
@@ -63,6 +52,11 @@ public class ExtractNativesStep extends Step {
         return output;
     }
 
+    @Override
+    public List<Object> getParameters() {
+        return new ArrayList<>(urls);
+    }
+
     public ExtractNativesStep setUrls(List<URL> urls) {
         this.urls = urls;
         return this;
@@ -73,8 +67,8 @@ public class ExtractNativesStep extends Step {
         return this;
     }
 
-    public ExtractNativesStep setProject(Project project) {
-        this.project = project;
+    public ExtractNativesStep setCache(NativesCache cache) {
+        this.cache = cache;
         return this;
     }
 }
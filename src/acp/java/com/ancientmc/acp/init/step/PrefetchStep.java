@@ -0,0 +1,135 @@
+package com.ancientmc.acp.init.step;
+
+import com.ancientmc.acp.download.DownloadQueue;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.util.DependencyLock;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downloads every artifact pinned in the lockfile at once, into a cache shared by all workspaces.
+ * <p>
+ * Configurations whose lock is missing or out of date are skipped, and keep resolving through the repositories.
+ * @see DependencyLock
+ */
+public class PrefetchStep extends Step {
+    /**
+     * The lockfile.
+     */
+    private File input;
+    /**
+     * The root of the shared artifact cache.
+     */
+    private File output;
+    /**
+     * The coordinates currently requested for each configuration.
+     */
+    private Map<String, List<String>> requested;
+    /**
+     * The maximum number of artifacts downloaded at once.
+     */
+    private int threads = 1;
+    /**
+     * The shared download service.
+     */
+    private DownloadService downloads;
+    /**
+     * The mirrors the artifacts are downloaded from.
+     */
+    private Mirrors mirrors;
+
+    /**
+     * Reads the lockfile and downloads whatever isn't in the cache yet. The message is only printed if anything is
+     * actually downloaded.
+     * @param logger The gradle logger.
+     * @param condition Boolean condition that determines if the step gets executed.
+     */
+    @Override
+    public void exec(Logger logger, boolean condition) {
+        if (!condition) {
+            return;
+        }
+
+        try {
+            DependencyLock lock = DependencyLock.read(input);
+            if (lock == null) {
+                return;
+            }
+
+            DownloadQueue queue = new DownloadQueue(threads);
+            int queued = 0;
+
+            for (Map.Entry<String, List<String>> cfg : requested.entrySet()) {
+                DependencyLock.Entry entry = lock.getConfiguration(cfg.getKey(), cfg.getValue());
+                if (entry == null) {
+                    if (logger != null) {
+                        logger.warn(DependencyLock.FILE_NAME + " is out of date for " + cfg.getKey() + ", run lockAcpDependencies to update it");
+                    }
+                    continue;
+                }
+
+                for (DependencyLock.Artifact artifact : entry.getArtifacts()) {
+                    File file = DependencyLock.getCachedFile(output, artifact);
+                    if (!file.exists()) {
+                        URL url = mirrors.resolve(new URL(artifact.url), downloads);
+                        queue.submit(artifact.coordinate, () -> addDownloaded(downloads.downloadAtomic(url, file, artifact.sha1, null)));
+                        queued++;
+                    }
+                }
+            }
+
+            printMessage(logger, message, queued > 0);
+            queue.await();
+        } catch (IOException e) {
+            if (logger != null) {
+                logger.warn("Couldn't prefetch the locked dependencies, resolving them from the repositories instead", e);
+            }
+        }
+    }
+
+    public File getOutput() {
+        return output;
+    }
+
+    public PrefetchStep setInput(File input) {
+        this.input = input;
+        return this;
+    }
+
+    public PrefetchStep setOutput(File output) {
+        this.output = output;
+        return this;
+    }
+
+    public PrefetchStep setRequested(Map<String, List<String>> requested) {
+        this.requested = requested;
+        return this;
+    }
+
+    public PrefetchStep setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public PrefetchStep setDownloads(DownloadService downloads) {
+        this.downloads = downloads;
+        return this;
+    }
+
+    public PrefetchStep setMirrors(Mirrors mirrors) {
+        this.mirrors = mirrors;
+        return this;
+    }
+
+    @Override
+    public PrefetchStep setMessage(String message) {
+        super.setMessage(message);
+        return this;
+    }
+}
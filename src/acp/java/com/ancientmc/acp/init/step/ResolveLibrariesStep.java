@@ -1,49 +1,47 @@
 package com.ancientmc.acp.init.step;
 
-import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.tasks.ResolveAcpLibraries;
 import org.gradle.api.Project;
-import org.gradle.api.artifacts.DependencyResolutionListener;
-import org.gradle.api.artifacts.DependencySet;
-import org.gradle.api.artifacts.ResolvableDependencies;
-
-import java.util.List;
+import org.gradle.api.file.ConfigurableFileTree;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.TaskProvider;
 
 /**
- * Downloads Minecraft's libraries as Gradle dependencies.
+ * Adds Minecraft's libraries to the implementation configuration.
  */
 public class ResolveLibrariesStep extends Step {
     /**
-     * The list of Minecraft's libraries, formatted via maven path (group.sub:name:version)
+     * The task that downloads the libraries.
      */
-    private List<String> libraries;
+    private TaskProvider<ResolveAcpLibraries> task;
     /**
      * The Gradle project.
      */
     private Project project;
 
     /**
-     * A list of all of Minecraft's libraries get parsed through and resolved via a Gradle listener.
-     * The list of libraries obtained via a method in the Json utilities class.
-     * @see Json#getLibraries(List)
+     * Adds the libraries as the output of the task that downloads them, rather than as coordinates. Gradle resolves the
+     * configuration to build the task graph, before the version JSON listing the libraries is downloaded, so the
+     * configuration only knows the task that produces the files; the files themselves are read once it ran.
+     * @param logger The gradle logger.
+     * @param condition Boolean condition that determines if the step gets executed.
+     * @see ResolveAcpLibraries
      */
     @Override
-    public void exec() {
-        DependencySet dependencies = project.getConfigurations().getByName("implementation").getDependencies();
-
-        project.getGradle().addListener(new DependencyResolutionListener() {
-            @Override
-            public void beforeResolve(ResolvableDependencies resolvableDependencies) {
-                libraries.forEach(lib -> dependencies.add(project.getDependencies().create(lib)));
-                project.getGradle().removeListener(this);
-            }
-
-            @Override
-            public void afterResolve(ResolvableDependencies resolvableDependencies) { }
-        });
+    public void exec(Logger logger, boolean condition) {
+        super.exec(logger, condition);
+        if (!condition) {
+            return;
+        }
+
+        ConfigurableFileTree libraries = project.fileTree(task.flatMap(ResolveAcpLibraries::getOutputDir));
+        libraries.include("*.jar");
+        libraries.builtBy(task);
+        project.getDependencies().add("implementation", libraries);
     }
 
-    public ResolveLibrariesStep setLibraries(List<String> libraries) {
-        this.libraries = libraries;
+    public ResolveLibrariesStep setTask(TaskProvider<ResolveAcpLibraries> task) {
+        this.task = task;
         return this;
     }
 
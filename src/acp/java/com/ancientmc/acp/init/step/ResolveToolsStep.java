@@ -1,15 +1,13 @@
 package com.ancientmc.acp.init.step;
 
+import com.ancientmc.acp.tasks.ResolveAcpTools;
+import com.ancientmc.acp.util.DependencyLock;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
-import org.gradle.api.artifacts.DependencyResolutionListener;
-import org.gradle.api.artifacts.ResolvableDependencies;
+import org.gradle.api.file.ConfigurableFileTree;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.tasks.TaskProvider;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class ResolveToolsStep extends Step {
@@ -19,56 +17,53 @@ public class ResolveToolsStep extends Step {
     private Project project;
 
     /**
-     * The gradle properties file, which contains a list of tools ACP uses to deobfuscate and decompile Minecraft.
+     * The tools ACP uses to deobfuscate and decompile Minecraft, keyed by configuration name.
+     * @see DependencyLock#getTools(Project)
      */
-    private File properties;
+    private Map<String, String> tools;
 
     /**
-     * Execution method. The properties file is read line-by-line and converted to a hash-map. That map is then used to resolve each tool dependency
-     * into its corresponding configuration.
+     * The task linking the tools pinned in the lockfile, or null if there is no lockfile.
+     */
+    private TaskProvider<ResolveAcpTools> task;
+
+    /**
+     * Execution method. Each tool dependency is added to its corresponding configuration.
+     * @param logger The gradle logger.
+     * @param condition Boolean condition that determines if the step gets executed.
      */
     @Override
-    public void exec() {
-        try {
-            List<String> lines = Files.readAllLines(properties.toPath());
-            Map<String, String> map = getConfigMap(lines);
-            map.forEach((name, tool) -> {
-                Configuration cfg = project.getConfigurations().getByName(name);
-                resolve(cfg, tool);
-            });
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public void exec(Logger logger, boolean condition) {
+        super.exec(logger, condition);
+        if (!condition) {
+            return;
         }
+
+        tools.forEach((name, tool) -> {
+            Configuration cfg = project.getConfigurations().findByName(name);
+            if (cfg != null) {
+                resolve(cfg, tool);
+            }
+        });
     }
 
     /**
-     * Resolves (adds) the dependency of the given tool configuration.
+     * Resolves (adds) the dependency of the given tool configuration. If there is a lockfile, the configuration gets the
+     * pinned files linked by the task instead of the coordinate. Like the libraries, they are only read once the task
+     * ran, see {@link ResolveLibrariesStep}.
      * @param cfg The tool configuration.
      * @param tool The name of the tool dependency.
      */
     public void resolve(Configuration cfg, String tool) {
-        project.getGradle().addListener(new DependencyResolutionListener() {
-            @Override
-            public void beforeResolve(ResolvableDependencies resolvableDependencies) {
-                cfg.getDependencies().add(project.getDependencies().create(tool));
-                project.getGradle().removeListener(this);
-            }
+        if (task == null) {
+            project.getDependencies().add(cfg.getName(), tool);
+            return;
+        }
 
-            @Override
-            public void afterResolve(ResolvableDependencies resolvableDependencies) { }
-        });
-    }
-
-    private Map<String, String> getConfigMap(List<String> lines) {
-        Map<String, String> map = new HashMap<>();
-        lines.forEach(line -> {
-            if (line.contains("tool_")) {
-                String[] split = line.split("=");
-                String name = split[0].substring(5);
-                map.put(name, split[1]);
-            }
-        });
-        return map;
+        String name = cfg.getName();
+        ConfigurableFileTree files = project.fileTree(task.flatMap(ResolveAcpTools::getOutputDir).map(dir -> dir.dir(name)));
+        files.builtBy(task);
+        project.getDependencies().add(cfg.getName(), files);
     }
 
     public ResolveToolsStep setProject(Project project) {
@@ -76,8 +71,13 @@ public class ResolveToolsStep extends Step {
         return this;
     }
 
-    public ResolveToolsStep setProperties(File properties) {
-        this.properties = properties;
+    public ResolveToolsStep setTools(Map<String, String> tools) {
+        this.tools = tools;
+        return this;
+    }
+
+    public ResolveToolsStep setTask(TaskProvider<ResolveAcpTools> task) {
+        this.task = task;
         return this;
     }
 }
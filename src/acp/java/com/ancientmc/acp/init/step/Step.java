@@ -1,12 +1,27 @@
 package com.ancientmc.acp.init.step;
 
+import com.ancientmc.acp.util.Events;
+import com.ancientmc.acp.util.ReportService;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 /**
- * Base class for steps, which are essentially mini-tasks that occur during the initilization (project configuration phase)
- * of ACP's setup.
+ * Base class for steps, which are essentially mini-tasks that make up ACP's setup tasks (downloading the data, the
+ * version JSON, the client JAR and so on).
+ * <p>
+ * Steps declare the files they read ({@link #getInputs()}) and write ({@link #getOutputs()}). Together with their
+ * {@link #getParameters() parameters}, that's what a {@link StepJournal} uses to skip steps whose inputs and outputs
+ * haven't changed since they last ran.
  */
 public class Step {
     /**
@@ -16,6 +31,37 @@ public class Step {
 
     protected File output;
 
+    /**
+     * The files this step reads, which other steps may produce.
+     */
+    private final Set<File> inputs = new LinkedHashSet<>();
+    /**
+     * Actions that finish configuring the step right before it runs, for settings that can only be known once the
+     * steps before it are done (e.g. a URL read from a downloaded JSON).
+     */
+    private final List<Action> actions = new ArrayList<>();
+    /**
+     * Determines if the step gets executed when it is run through {@link #run(Logger)}. Evaluated right before the step
+     * runs.
+     */
+    private BooleanSupplier condition = () -> true;
+    /**
+     * The journal consulted before the step runs, or null if the step always runs.
+     */
+    private StepJournal journal;
+    /**
+     * The report the step is timed in, or null if it isn't reported.
+     */
+    private ReportService report;
+    /**
+     * The path of the task running the step, for the report.
+     */
+    private String task;
+    /**
+     * The bytes this step transferred over the network.
+     */
+    private final AtomicLong downloaded = new AtomicLong();
+
     /**
      * Prints the message into the console. Determined by the condition specified.
      * @param logger The Gradle logger.
@@ -23,7 +69,7 @@ public class Step {
      * @param condition Boolean condition that determines if the message is printed.
      */
     public void printMessage(Logger logger, String message, boolean condition) {
-        if (condition) {
+        if (condition && logger != null && message != null) {
             logger.lifecycle(message);
         }
     }
@@ -46,9 +92,45 @@ public class Step {
         printMessage(logger, message, condition);
     }
 
+    /**
+     * Runs the doFirst actions, and then the step itself if its condition holds. With a journal, the step is skipped
+     * if it already ran with the same inputs and its outputs are untouched, and recorded once it ran. With a report,
+     * the step is timed, whether it executed or not. Every run is also a flight recorder event, see {@link Events}.
+     * @param logger The gradle logger.
+     */
+    public void run(Logger logger) {
+        long start = System.nanoTime();
+        long cpu = ReportService.cpuTime();
+        boolean condition = false;
+        try (Events.Span ignored = Events.step(task, getClass().getSimpleName(), getOutput())) {
+            for (Action action : actions) {
+                action.execute();
+            }
+
+            condition = this.condition.getAsBoolean();
+            if (condition && journal != null && journal.isCurrent(this)) {
+                if (logger != null) {
+                    logger.info("Skipping " + getClass().getSimpleName() + " for " + getOutput() + ", nothing changed");
+                }
+                condition = false;
+            }
+
+            exec(logger, condition);
+            if (condition && journal != null) {
+                journal.record(this);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (report != null) {
+                report.step(task, this, condition, System.nanoTime() - start, ReportService.cpuTime() - cpu);
+            }
+        }
+    }
+
     /**
      * Gets output from a file-based step. Usually used when getting a downloaded file in inherited Step classes.
-     * Easier to call this than typing out the full output in ACPInitialization.
+     * Easier to call this than typing out the full output in the setup tasks.
      * @return The output of the step.
      * @see DownloadFileStep#getOutput() DownloadFileStep.getOutput() for the most used example.
      */
@@ -56,6 +138,104 @@ public class Step {
         return output;
     }
 
+    /**
+     * Gets the files or directories this step writes. By default, that's just the output.
+     * @return The outputs of the step.
+     */
+    public Set<File> getOutputs() {
+        File output = getOutput();
+        return output == null ? Collections.emptySet() : Collections.singleton(output);
+    }
+
+    /**
+     * Gets the files this step reads.
+     * @return The inputs of the step.
+     */
+    public Set<File> getInputs() {
+        return Collections.unmodifiableSet(inputs);
+    }
+
+    /**
+     * Declares files this step reads.
+     * @param files The input files.
+     * @return This step.
+     */
+    public Step addInputs(File... files) {
+        Collections.addAll(inputs, files);
+        return this;
+    }
+
+    /**
+     * Gets the values besides the input files that determine what the step writes, e.g. the URL of a download.
+     * @return The parameters of the step.
+     */
+    public List<Object> getParameters() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the bytes this step transferred over the network so far.
+     * @return The number of bytes.
+     */
+    public long getDownloaded() {
+        return downloaded.get();
+    }
+
+    /**
+     * Adds to the bytes this step transferred over the network. Called by steps that download.
+     * @param bytes The number of bytes. Negative values (e.g. {@link com.ancientmc.acp.download.Downloads#NOT_MODIFIED})
+     *              are ignored.
+     * @return The same number of bytes.
+     */
+    protected long addDownloaded(long bytes) {
+        if (bytes > 0) {
+            downloaded.addAndGet(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Makes the step time itself in a report when it is run through {@link #run(Logger)}.
+     * @param report The report service.
+     * @param task The path of the task running the step.
+     * @return This step.
+     */
+    public Step setReport(ReportService report, String task) {
+        this.report = report;
+        this.task = task;
+        return this;
+    }
+
+    /**
+     * Makes the step consult a journal when it is run through {@link #run(Logger)}.
+     * @param journal The journal.
+     * @return This step.
+     */
+    public Step setJournal(StepJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Adds an action that runs right before the step.
+     * @param action The action.
+     * @return This step.
+     */
+    public Step doFirst(Action action) {
+        actions.add(action);
+        return this;
+    }
+
+    /**
+     * Sets the condition that determines if the step gets executed when run through {@link #run(Logger)}.
+     * @param condition The condition.
+     * @return This step.
+     */
+    public Step onlyIf(BooleanSupplier condition) {
+        this.condition = condition;
+        return this;
+    }
+
     /**
      * Sets the message printed to the console.
      * @param message The message printed to the console.
@@ -65,4 +245,12 @@ public class Step {
         this.message = message;
         return this;
     }
+
+    /**
+     * An action run right before a step.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void execute() throws IOException;
+    }
 }
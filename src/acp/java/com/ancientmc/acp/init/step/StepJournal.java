@@ -0,0 +1,179 @@
+package com.ancientmc.acp.init.step;
+
+import com.ancientmc.acp.util.Util;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A small persisted record of the steps that ran successfully: for each step, a fingerprint of what it was run with
+ * (its parameters and the size and modification time of its input files), and the size and modification time of every
+ * file it wrote.
+ * <p>
+ * A step is skipped when both still match, so it reruns exactly when something it reads changed, or when one of its
+ * outputs was modified, deleted, or never completed because the step failed halfway.
+ * @see Step#run(org.gradle.api.logging.Logger)
+ */
+public class StepJournal {
+    /**
+     * The journal file.
+     */
+    private final File file;
+    /**
+     * The recorded steps, keyed by {@link #getKey(Step)}.
+     */
+    private final Map<String, Record> records = new TreeMap<>();
+
+    private StepJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a journal, reading it if it already exists. An unreadable journal is treated as empty, which only means
+     * that every step runs once more.
+     * @param file The journal file.
+     * @return The journal.
+     */
+    public static StepJournal open(File file) {
+        StepJournal journal = new StepJournal(file);
+        if (!file.exists()) {
+            return journal;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonObject json = new Gson().fromJson(reader, JsonObject.class);
+            for (Map.Entry<String, JsonElement> step : json.entrySet()) {
+                JsonObject object = step.getValue().getAsJsonObject();
+                Record record = new Record(object.get("inputs").getAsString());
+                object.getAsJsonObject("outputs").entrySet().forEach(output -> record.outputs.put(output.getKey(), output.getValue().getAsString()));
+                journal.records.put(step.getKey(), record);
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.records.clear();
+        }
+        return journal;
+    }
+
+    /**
+     * Checks whether a step can be skipped.
+     * @param step The step.
+     * @return True if the step last ran with the same inputs, and none of its outputs changed since.
+     */
+    public synchronized boolean isCurrent(Step step) {
+        Record record = records.get(getKey(step));
+        if (record == null || !record.inputs.equals(fingerprint(step))) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> output : record.outputs.entrySet()) {
+            if (!output.getValue().equals(stat(new File(output.getKey())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a step that just ran. Nothing is recorded if one of its outputs is missing, since the step then failed.
+     * @param step The step.
+     * @throws IOException
+     */
+    public synchronized void record(Step step) throws IOException {
+        String key = getKey(step);
+        Record record = new Record(fingerprint(step));
+        for (File output : step.getOutputs()) {
+            if (!output.exists()) {
+                records.remove(key);
+                save();
+                return;
+            }
+            collect(output, record.outputs);
+        }
+
+        records.put(key, record);
+        save();
+    }
+
+    private void save() throws IOException {
+        JsonObject json = new JsonObject();
+        records.forEach((key, record) -> {
+            JsonObject outputs = new JsonObject();
+            record.outputs.forEach(outputs::addProperty);
+
+            JsonObject object = new JsonObject();
+            object.addProperty("inputs", record.inputs);
+            object.add("outputs", outputs);
+            json.add(key, object);
+        });
+
+        FileUtils.forceMkdirParent(file);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+        }
+    }
+
+    /**
+     * Steps are identified by their type and their first output, which no other step of a workspace writes.
+     */
+    private static String getKey(Step step) {
+        return step.getClass().getSimpleName() + ':' + step.getOutput();
+    }
+
+    /**
+     * Hashes a step's parameters, and the paths, sizes and modification times of its input files.
+     */
+    private static String fingerprint(Step step) {
+        MessageDigest digest = Util.sha1();
+        for (Object parameter : step.getParameters()) {
+            digest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (File input : step.getInputs()) {
+            digest.update((input.getAbsolutePath() + '=' + stat(input)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return Util.toHex(digest.digest());
+    }
+
+    /**
+     * Adds the stats of a file, or of every file within a directory.
+     */
+    private static void collect(File file, Map<String, String> stats) {
+        if (file.isDirectory()) {
+            Collection<File> files = FileUtils.listFiles(file, null, true);
+            files.forEach(child -> stats.put(child.getAbsolutePath(), stat(child)));
+        } else {
+            stats.put(file.getAbsolutePath(), stat(file));
+        }
+    }
+
+    private static String stat(File file) {
+        return file.isFile() ? file.length() + ":" + file.lastModified() : "missing";
+    }
+
+    /**
+     * The last successful run of a step.
+     */
+    private static class Record {
+        private final String inputs;
+        private final Map<String, String> outputs = new HashMap<>();
+
+        private Record(String inputs) {
+            this.inputs = inputs;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.ancientmc.acp.init.step;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.ZipDelta;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Updates a directory that was extracted from a remote zip in place, fetching only the entries that changed.
+ * Used for the ACP data, so that a data bump costs a few kilobytes instead of the whole archive.
+ * <p>
+ * A stamp file in the directory records which coordinate it was last synced with, when, and which entries it got.
+ * The directory is left alone while the stamp is fresh. If the delta can't be applied (e.g. the server ignores
+ * ranges), {@link #isFallback()} tells the full download and extraction to run instead.
+ * @see ZipDelta
+ */
+public class SyncZipStep extends Step {
+    /**
+     * The URL of the zip.
+     */
+    private URL input;
+    /**
+     * The directory the zip is extracted into.
+     */
+    private File output;
+    /**
+     * The coordinate of the zip, which identifies the version in the stamp regardless of the mirror it comes from.
+     */
+    private String coordinate;
+    /**
+     * How long, in milliseconds, a sync of the same coordinate stays valid.
+     */
+    private long ttl;
+    /**
+     * Whether the delta failed and the zip has to be downloaded and extracted in full.
+     */
+    private boolean fallback;
+    /**
+     * The shared download service.
+     */
+    private DownloadService downloads;
+
+    /**
+     * Syncs the directory with the zip, unless it was synced with the same coordinate recently.
+     * @param logger The gradle logger.
+     * @param condition Boolean condition that determines if the step gets executed.
+     */
+    @Override
+    public void exec(Logger logger, boolean condition) {
+        fallback = false;
+        if (!condition) {
+            return;
+        }
+
+        try {
+            if (isFresh(output, coordinate, ttl)) {
+                return;
+            }
+
+            List<String> previous = null;
+            File stamp = getStamp(output);
+            if (stamp.exists()) {
+                List<String> lines = Files.readAllLines(stamp.toPath(), StandardCharsets.UTF_8);
+                if (lines.size() >= 2) {
+                    previous = lines.subList(2, lines.size());
+                }
+            }
+
+            ZipDelta.Result result = ZipDelta.sync(input, output, previous, downloads);
+            addDownloaded(result.transferred);
+            if (result.changed > 0 || result.removed > 0) {
+                printMessage(logger, message + " (" + result.changed + " changed, " + result.removed + " removed, "
+                        + result.transferred / 1024 + " KB)", true);
+            }
+            stamp(result.entries);
+        } catch (IOException | RuntimeException e) {
+            if (logger != null) {
+                logger.info("Couldn't update " + output + " in place, downloading it in full", e);
+            }
+            fallback = true;
+        }
+    }
+
+    /**
+     * Records that the directory is in sync with the coordinate, e.g. after the zip was extracted in full.
+     * @param entries The entries of the zip.
+     * @throws IOException
+     */
+    public void stamp(List<String> entries) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(coordinate);
+        lines.add(Long.toString(System.currentTimeMillis()));
+        lines.addAll(entries);
+        Files.write(getStamp(output).toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether a directory was synced with a coordinate recently, without touching the network.
+     * @param dir The directory the zip is extracted into.
+     * @param coordinate The coordinate of the zip.
+     * @param ttl How long, in milliseconds, a sync stays valid.
+     * @return True if the directory doesn't need to be synced.
+     */
+    public static boolean isFresh(File dir, String coordinate, long ttl) {
+        File stamp = getStamp(dir);
+        if (!stamp.exists()) {
+            return false;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(stamp.toPath(), StandardCharsets.UTF_8);
+            return lines.size() >= 2 && lines.get(0).equals(coordinate)
+                    && System.currentTimeMillis() - Long.parseLong(lines.get(1)) < ttl;
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return True if the delta couldn't be applied, and the zip has to be downloaded and extracted in full.
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    private static File getStamp(File dir) {
+        return new File(dir, ".acp-data");
+    }
+
+    public File getOutput() {
+        return output;
+    }
+
+    public SyncZipStep setInput(URL input) {
+        this.input = input;
+        return this;
+    }
+
+    public SyncZipStep setOutput(File output) {
+        this.output = output;
+        return this;
+    }
+
+    public SyncZipStep setCoordinate(String coordinate) {
+        this.coordinate = coordinate;
+        return this;
+    }
+
+    public SyncZipStep setTtl(long ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public SyncZipStep setDownloads(DownloadService downloads) {
+        this.downloads = downloads;
+        return this;
+    }
+
+    @Override
+    public SyncZipStep setMessage(String message) {
+        super.setMessage(message);
+        return this;
+    }
+}
@@ -0,0 +1,431 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.util.ClassDataArchive;
+import com.ancientmc.acp.util.Events;
+import com.ancientmc.acp.util.ReportService;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Decompiles the deobfuscated JAR with fernflower, which only uses a single thread.
+ * <p>
+ * With more than one shard, the classes are split into shards, each holding whole outer classes along with their inner
+ * classes (Minecraft's obfuscated classes all share one package, so splitting by package wouldn't spread the work).
+ * The shards are decompiled concurrently, each with the other shards as libraries for context, and their sources are
+ * merged into the output JAR in name order, so the result doesn't depend on which shard finished first.
+ */
+public abstract class DecompileJar extends DefaultTask {
+    /**
+     * The main class of fernflower.
+     */
+    private static final String DECOMPILER = "org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler";
+
+    /**
+     * The time of the entries of a merged JAR, the earliest a ZIP can store.
+     */
+    private static final long ENTRY_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void exec() {
+        File input = getInputJar().get().getAsFile();
+        File output = getOutputJar().get().getAsFile();
+        ToolExec.Mode mode = getMode().getOrElse(ToolExec.Mode.FORK).forTool("fernflower");
+
+        try (Events.Span ignored = Events.tool(getPath(), "fernflower")) {
+            if (getShards().getOrElse(1) <= 1) {
+                List<String> args = getArgs(input, Collections.emptyList(), output);
+                if (mode != ToolExec.Mode.FORK) {
+                    ToolExec.submit(getWorkerExecutor(), mode, getClasspath(), this::configureFork, DECOMPILER, args).await();
+                    return;
+                }
+                ClassDataArchive archive = getClassDataArchive();
+                try {
+                    submitFork(args, archive);
+                    getWorkerExecutor().await();
+                    if (archive != null) {
+                        archive.commit();
+                    }
+                } finally {
+                    if (archive != null) {
+                        archive.discard();
+                    }
+                }
+                if (getReportService().isPresent()) {
+                    getReportService().get().forked(getPath(), 1);
+                }
+                return;
+            }
+
+            File temp = getTemporaryDir();
+            getFileSystemOperations().delete(spec -> spec.delete((Object[]) temp.listFiles()));
+
+            List<File> shards;
+            try (Events.Span span = Events.phase(getPath(), "shard")) {
+                shards = shard(input, getShards().get(), temp);
+                span.setFiles(shards.size());
+            }
+
+            List<File> sources = new ArrayList<>();
+            List<ClassDataArchive> archives = new ArrayList<>();
+            try (Events.Span ignored1 = Events.phase(getPath(), "decompile")) {
+                for (File shard : shards) {
+                    List<File> libraries = new ArrayList<>(shards);
+                    libraries.remove(shard);
+                    File source = new File(temp, shard.getName().replace(".jar", "-src.jar"));
+                    List<String> args = getArgs(shard, libraries, source);
+                    sources.add(source);
+
+                    if (mode == ToolExec.Mode.FORK) {
+                        // Every fork dumps to a file of its own if there is no archive yet.
+                        ClassDataArchive archive = getClassDataArchive();
+                        archives.add(archive);
+                        submitFork(args, archive);
+                    } else {
+                        // Fernflower isn't known to be safe to run twice at once in the same JVM, so shards never share one.
+                        ToolExec.submit(getWorkerExecutor(), ToolExec.Mode.POOLED, getClasspath(), this::configureFork, DECOMPILER, args);
+                    }
+                }
+                getWorkerExecutor().await();
+                archives.stream().filter(archive -> archive != null).forEach(ClassDataArchive::commit);
+            } finally {
+                archives.stream().filter(archive -> archive != null).forEach(ClassDataArchive::discard);
+            }
+            if (mode == ToolExec.Mode.FORK && getReportService().isPresent()) {
+                getReportService().get().forked(getPath(), shards.size());
+            }
+
+            try (Events.Span span = Events.phase(getPath(), "merge")) {
+                span.setFiles(merge(sources, output));
+            }
+            getFileSystemOperations().delete(spec -> spec.delete((Object[]) temp.listFiles()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets up the JVM of pooled fernflower runs like the JVM of a fork, see {@link ToolExec#configureFork}.
+     */
+    private void configureFork(JavaForkOptions fork) {
+        ToolExec.configureFork(fork, getJavaLauncher().getOrNull(), null, getMaxHeapSize().getOrNull(), getJvmArgs().get());
+    }
+
+    /**
+     * Forks fernflower in a worker, on the JVM of the Java launcher with the heap size and JVM arguments of the task.
+     * @param args The arguments of fernflower.
+     * @param archive The class data archive of the fork, or null.
+     */
+    private void submitFork(List<String> args, ClassDataArchive archive) {
+        getWorkerExecutor().noIsolation().submit(Fork.class, params -> {
+            params.getClasspath().from(getClasspath());
+            params.getArgs().set(args);
+            if (getJavaLauncher().isPresent()) {
+                params.getExecutable().set(getJavaLauncher().get().getExecutablePath());
+            }
+            params.getMaxHeapSize().set(getMaxHeapSize());
+            params.getJvmArgs().addAll(getJvmArgs());
+            if (archive != null) {
+                params.getJvmArgs().addAll(archive.getJvmArgs());
+            }
+        });
+    }
+
+    /**
+     * Gets the class data archive of a fernflower fork, or null if there is none. The archive belongs to the JVM of
+     * the Java launcher, or to the JVM running Gradle if there is no launcher.
+     */
+    private ClassDataArchive getClassDataArchive() {
+        File dir = getClassDataDir().getAsFile().getOrNull();
+        if (dir == null || !getJavaLauncher().isPresent()) {
+            return ClassDataArchive.ofCurrentJvm(dir, "fernflower", getCoordinate().getOrNull(), getClasspath());
+        }
+        JavaInstallationMetadata jvm = getJavaLauncher().get().getMetadata();
+        return ClassDataArchive.of(dir, "fernflower", getCoordinate().getOrNull(), getClasspath(), jvm.getLanguageVersion().asInt(),
+                jvm.getInstallationPath().getAsFile());
+    }
+
+    /**
+     * Gets the arguments of fernflower.
+     * @param input The JAR to decompile.
+     * @param libraries The JARs only used for context.
+     * @param output The JAR of the sources.
+     * @return The arguments.
+     */
+    private List<String> getArgs(File input, List<File> libraries, File output) {
+        List<String> args = new ArrayList<>(getOptions().get());
+        libraries.forEach(library -> args.add("-e=" + library.getAbsolutePath()));
+        args.add(input.getAbsolutePath());
+        args.add(output.getAbsolutePath());
+        return args;
+    }
+
+    /**
+     * Splits a JAR into shards of about the same size. Each outer class goes to a shard along with its inner classes,
+     * largest first, into the shard with the fewest bytes so far. Other files go to the first shard. The shards are
+     * written without compression, since they are only read once.
+     * @param input The JAR.
+     * @param count The number of shards.
+     * @param dir The directory of the shards.
+     * @return The shards, fewer than the count if there aren't enough classes.
+     * @throws IOException
+     */
+    public static List<File> shard(File input, int count, File dir) throws IOException {
+        try (ZipFile zip = new ZipFile(input)) {
+            Map<String, List<ZipEntry>> classes = new TreeMap<>();
+            List<ZipEntry> others = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (name.endsWith(".class")) {
+                    int inner = name.indexOf('$');
+                    String outer = inner != -1 ? name.substring(0, inner) : name.substring(0, name.length() - ".class".length());
+                    classes.computeIfAbsent(outer, key -> new ArrayList<>()).add(entry);
+                } else {
+                    others.add(entry);
+                }
+            }
+
+            // The sort is stable, so classes of the same size stay in name order and every build gets the same shards.
+            List<List<ZipEntry>> groups = new ArrayList<>(classes.values());
+            groups.sort(Comparator.comparingLong(DecompileJar::getSize).reversed());
+
+            List<List<ZipEntry>> shards = new ArrayList<>();
+            long[] sizes = new long[Math.min(count, Math.max(groups.size(), 1))];
+            for (int i = 0; i < sizes.length; i++) {
+                shards.add(new ArrayList<>());
+            }
+            for (List<ZipEntry> group : groups) {
+                int smallest = 0;
+                for (int i = 1; i < sizes.length; i++) {
+                    if (sizes[i] < sizes[smallest]) {
+                        smallest = i;
+                    }
+                }
+                shards.get(smallest).addAll(group);
+                sizes[smallest] += getSize(group);
+            }
+            shards.get(0).addAll(others);
+
+            List<File> files = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                File file = new File(dir, "shard" + i + ".jar");
+                try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    for (ZipEntry entry : shards.get(i)) {
+                        byte[] bytes;
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            bytes = IOUtils.toByteArray(in);
+                        }
+                        CRC32 crc = new CRC32();
+                        crc.update(bytes);
+                        ZipEntry stored = new ZipEntry(entry.getName());
+                        stored.setMethod(ZipEntry.STORED);
+                        stored.setSize(bytes.length);
+                        stored.setCompressedSize(bytes.length);
+                        stored.setCrc(crc.getValue());
+                        stored.setTime(entry.getTime());
+                        out.putNextEntry(stored);
+                        out.write(bytes);
+                        out.closeEntry();
+                    }
+                }
+                files.add(file);
+            }
+            return files;
+        }
+    }
+
+    /**
+     * Merges the sources of the shards into one JAR, in name order. If the same file is in more than one shard, the
+     * first shard's is kept.
+     * @param sources The source JARs of the shards, in shard order.
+     * @param output The merged JAR.
+     * @return The number of entries.
+     * @throws IOException
+     */
+    public static int merge(List<File> sources, File output) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        for (File source : sources) {
+            try (ZipFile zip = new ZipFile(source)) {
+                for (ZipEntry entry : Collections.list(zip.entries())) {
+                    if (!entry.isDirectory() && !entries.containsKey(entry.getName())) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            entries.put(entry.getName(), IOUtils.toByteArray(in));
+                        }
+                    }
+                }
+            }
+        }
+
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry merged = new ZipEntry(entry.getKey());
+                merged.setTime(ENTRY_TIME);
+                out.putNextEntry(merged);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return entries.size();
+    }
+
+    private static long getSize(List<ZipEntry> group) {
+        return group.stream().mapToLong(ZipEntry::getSize).sum();
+    }
+
+    /**
+     * The deobfuscated JAR (${version}-srg.jar).
+     */
+    @InputFile
+    public abstract RegularFileProperty getInputJar();
+
+    /**
+     * The options of fernflower, e.g. -din=1.
+     */
+    @Input
+    public abstract ListProperty<String> getOptions();
+
+    /**
+     * The classpath of fernflower (the fernflower configuration).
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * The number of shards decompiled concurrently. One shard decompiles the whole JAR in a single run. Defaults to 1.
+     */
+    @Internal
+    public abstract Property<Integer> getShards();
+
+    /**
+     * The JAR of the decompiled sources (${version}-final.jar).
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    /**
+     * How fernflower runs, see {@link ToolExec.Mode}. Shards in process run pooled instead. Defaults to
+     * {@link ToolExec.Mode#FORK}.
+     */
+    @Internal
+    public abstract Property<ToolExec.Mode> getMode();
+
+    /**
+     * The Java launcher of fernflower, forked or pooled. Uses the JVM running Gradle if it isn't set.
+     */
+    @Internal
+    public abstract Property<JavaLauncher> getJavaLauncher();
+
+    /**
+     * The maximum heap size of fernflower, forked or pooled, e.g. 2g. Optional.
+     */
+    @Internal
+    public abstract Property<String> getMaxHeapSize();
+
+    /**
+     * Additional JVM arguments of fernflower, forked or pooled.
+     */
+    @Internal
+    public abstract ListProperty<String> getJvmArgs();
+
+    /**
+     * The coordinate of fernflower, from gradle.properties. Part of the key of its class data archive. Optional.
+     */
+    @Internal
+    public abstract Property<String> getCoordinate();
+
+    /**
+     * The directory of the class data archives of forked tools, see {@link ClassDataArchive}. Class data sharing is
+     * off if it isn't set.
+     */
+    @Internal
+    public abstract DirectoryProperty getClassDataDir();
+
+    /**
+     * The build report the forked decompiler JVMs are counted in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface ForkParams extends WorkParameters {
+        ConfigurableFileCollection getClasspath();
+
+        ListProperty<String> getArgs();
+
+        RegularFileProperty getExecutable();
+
+        Property<String> getMaxHeapSize();
+
+        ListProperty<String> getJvmArgs();
+    }
+
+    /**
+     * Forks fernflower for the JAR or one of its shards. Runs in a worker, so that the forks of the shards run
+     * concurrently.
+     */
+    public abstract static class Fork implements WorkAction<ForkParams> {
+        @Inject
+        protected abstract ExecOperations getExecOperations();
+
+        @Override
+        public void execute() {
+            ForkParams params = getParameters();
+            getExecOperations().javaexec(action -> {
+                action.getMainClass().set(DECOMPILER);
+                action.setClasspath(params.getClasspath());
+                if (params.getExecutable().isPresent()) {
+                    action.setExecutable(params.getExecutable().get().getAsFile());
+                }
+                action.setMaxHeapSize(params.getMaxHeapSize().getOrNull());
+                action.jvmArgs(params.getJvmArgs().get());
+                action.args(params.getArgs().get());
+            });
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.util.ClassDataArchive;
+import com.ancientmc.acp.util.Events;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.Util;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.ExecOperations;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Does the work of stripJar, injectModPatches, mcinject and deobfJar in a single task, which only writes the extra JAR
+ * and the deobfuscated JAR. Used instead of those tasks if fused deobfuscation is turned on. Its JARs are separate from
+ * theirs (in cfg/temp/fused/), so no file has two producers.
+ * <p>
+ * The client JAR is read once, and split in the task itself rather than by jarsplitter: the classes are inflated in
+ * parallel, and the slim JAR is written without compression, since it only lives until the next stage reads it. The
+ * binary patches, the injection and the remapping still run through their tools (binarypatcher, MCInjector and
+ * AutoRenamingTool), whose intermediate JARs stay in the temporary directory of the task.
+ */
+public abstract class DeobfuscateJar extends DefaultTask {
+    /**
+     * The main class of MCInjector.
+     */
+    private static final String MCINJECTOR = "de.oceanlabs.mcp.mcinjector.MCInjector";
+
+    /**
+     * The main class of AutoRenamingTool.
+     */
+    private static final String RENAMER = "net.neoforged.art.Main";
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void exec() {
+        File temp = getTemporaryDir();
+        File srg = getSrg().get().getAsFile();
+        File current = new File(temp, "slim.jar");
+
+        try (Events.Span span = Events.phase(getPath(), "split")) {
+            span.setFiles(split(getInputJar().get().getAsFile(), srg, current, getExtraJar().get().getAsFile()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Each patch applies to the output of the previous one, the mod loader's first.
+        List<File> patches = new ArrayList<>(getPatches().getFiles());
+        patches.sort(new InjectModPatches.LzmaComparator());
+        for (int i = 0; i < patches.size(); i++) {
+            File patched = new File(temp, "mod" + i + ".jar");
+            runTool("binpatch", getBinpatchClasspath(), InjectModPatches.BINPATCHER, Arrays.asList("--clean", current.getAbsolutePath(),
+                    "--apply", patches.get(i).getAbsolutePath(), "--output", patched.getAbsolutePath(), "--unpatched"));
+            current = patched;
+        }
+
+        File injected = new File(temp, "inject.jar");
+        runTool("mcinjector", getInjectorClasspath(), MCINJECTOR, Arrays.asList("--in", current.getAbsolutePath(), "--out", injected.getAbsolutePath(),
+                "--exc", getExceptions().get().getAsFile().getAbsolutePath(), "--blacklist", getBlacklist().get().getAsFile().getAbsolutePath()));
+
+        runTool("forgeart", getRenamerClasspath(), RENAMER, Arrays.asList("--input", injected.getAbsolutePath(),
+                "--output", getOutputJar().get().getAsFile().getAbsolutePath(), "--map", srg.getAbsolutePath(), "--src-fix", "--strip-sigs"));
+
+        getFileSystemOperations().delete(spec -> spec.delete((Object[]) temp.listFiles()));
+    }
+
+    /**
+     * Splits the client JAR like jarsplitter: the classes of the SRG go to the slim JAR, everything else to the extra
+     * JAR. Entries are inflated in parallel, then written in their original order.
+     * @param input The client JAR.
+     * @param srg The SRG file.
+     * @param slim The slim JAR, written without compression.
+     * @param extra The extra JAR.
+     * @return The number of entries.
+     * @throws IOException
+     */
+    public static int split(File input, File srg, File slim, File extra) throws IOException {
+        Set<String> classes = Util.getClassMap(srg).keySet();
+        try (ZipFile zip = new ZipFile(input);
+             ZipOutputStream slimOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(slim)));
+             ZipOutputStream extraOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(extra)))) {
+            List<? extends ZipEntry> entries = Collections.list(zip.entries()).stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .collect(Collectors.toList());
+            List<byte[]> contents = entries.parallelStream().map(entry -> {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return IOUtils.toByteArray(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+
+            for (int i = 0; i < entries.size(); i++) {
+                String name = entries.get(i).getName();
+                byte[] bytes = contents.get(i);
+                ZipEntry entry = new ZipEntry(name);
+                entry.setTime(entries.get(i).getTime());
+
+                if (name.endsWith(".class") && classes.contains(name.substring(0, name.length() - ".class".length()))) {
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(bytes.length);
+                    entry.setCompressedSize(bytes.length);
+                    entry.setCrc(crc.getValue());
+                    slimOut.putNextEntry(entry);
+                    slimOut.write(bytes);
+                    slimOut.closeEntry();
+                } else {
+                    extraOut.putNextEntry(entry);
+                    extraOut.write(bytes);
+                    extraOut.closeEntry();
+                }
+            }
+            return entries.size();
+        }
+    }
+
+    /**
+     * Runs one of the tools, see {@link ToolExec#run}.
+     * @param tool The name of the tool's configuration.
+     * @param classpath The tool's classpath.
+     * @param mainClass The tool's main class.
+     * @param args The tool's arguments.
+     */
+    private void runTool(String tool, FileCollection classpath, String mainClass, List<String> args) {
+        try (Events.Span ignored = Events.tool(getPath(), tool)) {
+            ClassDataArchive archive = ClassDataArchive.ofCurrentJvm(getClassDataDir().getAsFile().getOrNull(), tool,
+                    getCoordinates().getting(tool).getOrNull(), classpath);
+            boolean forked = ToolExec.run(getExecOperations(), getWorkerExecutor(), getMode().getOrElse(ToolExec.Mode.FORK).forTool(tool), classpath,
+                    mainClass, args, archive);
+            if (forked && getReportService().isPresent()) {
+                getReportService().get().forked(getPath(), 1);
+            }
+        }
+    }
+
+    /**
+     * The client JAR (${version}.jar).
+     */
+    @InputFile
+    public abstract RegularFileProperty getInputJar();
+
+    /**
+     * The SRG file, used for splitting and remapping.
+     */
+    @InputFile
+    public abstract RegularFileProperty getSrg();
+
+    /**
+     * The exceptions file of MCInjector.
+     */
+    @InputFile
+    public abstract RegularFileProperty getExceptions();
+
+    /**
+     * The blacklist file of MCInjector.
+     */
+    @InputFile
+    public abstract RegularFileProperty getBlacklist();
+
+    /**
+     * The LZMA patches to apply, if this is a mod workspace.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public abstract ConfigurableFileCollection getPatches();
+
+    /**
+     * The classpath of the binary patcher (the binpatch configuration).
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getBinpatchClasspath();
+
+    /**
+     * The classpath of MCInjector (the mcinjector configuration).
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getInjectorClasspath();
+
+    /**
+     * The classpath of AutoRenamingTool (the forgeart configuration).
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getRenamerClasspath();
+
+    /**
+     * The JAR holding everything but the Minecraft classes (${version}-extra.jar).
+     */
+    @OutputFile
+    public abstract RegularFileProperty getExtraJar();
+
+    /**
+     * The deobfuscated JAR (${version}-srg.jar).
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputJar();
+
+    /**
+     * How the tools run, see {@link ToolExec.Mode}. Defaults to {@link ToolExec.Mode#FORK}.
+     */
+    @Internal
+    public abstract Property<ToolExec.Mode> getMode();
+
+    /**
+     * The coordinates of the tools, keyed by configuration name. Part of the keys of their class data archives.
+     */
+    @Internal
+    public abstract MapProperty<String, String> getCoordinates();
+
+    /**
+     * The directory of the class data archives of forked tools, see {@link ClassDataArchive}. Class data sharing is
+     * off if it isn't set.
+     */
+    @Internal
+    public abstract DirectoryProperty getClassDataDir();
+
+    /**
+     * The build report the forked tool JVMs are counted in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+}
@@ -0,0 +1,199 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.init.step.DownloadFileStep;
+import com.ancientmc.acp.init.step.ExtractFileStep;
+import com.ancientmc.acp.init.step.SyncZipStep;
+import com.ancientmc.acp.init.step.StepJournal;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.Util;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+
+/**
+ * Downloads the ACP data (mappings, patches, ACP's library list...) and extracts it into the cfg directory. An existing
+ * workspace only fetches the data entries that changed; the full zip is a fallback.
+ * <p>
+ * The task is up-to-date while the data coordinate is unchanged and the last sync is younger than the refresh TTL.
+ * @see SyncZipStep
+ */
+public abstract class DownloadAcpData extends DefaultTask {
+
+    public DownloadAcpData() {
+        getOutputs().upToDateWhen(task -> SyncZipStep.isFresh(getOutputDir().get().getAsFile(), getData().get(), getTtl().get()));
+    }
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getData().set(getData());
+            params.getOutputDir().set(getOutputDir());
+            params.getDataZip().set(getDataZip());
+            params.getSrg().set(getSrg());
+            params.getTtl().set(getTtl());
+            params.getJournal().set(getJournal());
+            params.getDownloadService().set(getDownloadService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The maven coordinate of the data.
+     */
+    @Input
+    public abstract Property<String> getData();
+
+    /**
+     * The cfg directory the data is extracted into. Other tasks write into it too, so only the files of the data that
+     * later tasks read are declared as outputs.
+     */
+    @Internal
+    public abstract DirectoryProperty getOutputDir();
+
+    /**
+     * The downloaded data zip.
+     */
+    @Internal
+    public abstract RegularFileProperty getDataZip();
+
+    /**
+     * The mappings for the version.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getSrg();
+
+    /**
+     * ACP's additional library list for the version.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getJarDependencies();
+
+    /**
+     * How long, in milliseconds, the data is trusted before being revalidated.
+     */
+    @Internal
+    public abstract Property<Long> getTtl();
+
+    /**
+     * The journal of the steps this task runs, see {@link StepJournal}.
+     */
+    @Internal
+    public abstract RegularFileProperty getJournal();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        Property<String> getData();
+
+        DirectoryProperty getOutputDir();
+
+        RegularFileProperty getDataZip();
+
+        RegularFileProperty getSrg();
+
+        Property<Long> getTtl();
+
+        RegularFileProperty getJournal();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            Logger logger = Logging.getLogger(DownloadAcpData.class);
+            DownloadService downloads = params.getDownloadService().get();
+            File dir = params.getOutputDir().get().getAsFile();
+            boolean exists = params.getSrg().get().getAsFile().exists();
+            StepJournal journal = StepJournal.open(params.getJournal().get().getAsFile());
+            ReportService report = params.getReportService().getOrNull();
+            String task = params.getTaskPath().get();
+
+            try {
+                URL url = params.getMirrors().get().resolve(Util.toMavenUrl(Util.getAncientMCMaven(), params.getData().get(), "zip"), downloads);
+
+                SyncZipStep sync = new SyncZipStep()
+                        .setInput(url)
+                        .setOutput(dir)
+                        .setCoordinate(params.getData().get())
+                        .setTtl(params.getTtl().get())
+                        .setDownloads(downloads)
+                        .setMessage("Updating ACP data");
+                sync.setReport(report, task)
+                        .onlyIf(() -> exists)
+                        .run(logger);
+
+                DownloadFileStep download = new DownloadFileStep()
+                        .setInput(url)
+                        .setOutput(params.getDataZip().get().getAsFile())
+                        .setDownloads(downloads)
+                        .setTtl(params.getTtl().get())
+                        .setMessage("Downloading ACP data");
+                download.setReport(report, task)
+                        .onlyIf(() -> !exists || sync.isFallback())
+                        .run(logger);
+
+                // The journal reruns the extraction if the zip changed, or if an extracted file is missing or was modified.
+                ExtractFileStep extract = new ExtractFileStep()
+                        .setInput(download.getOutput())
+                        .setOutput(dir)
+                        .setMessage("Extracting ACP data");
+                extract.setJournal(journal)
+                        .setReport(report, task)
+                        .onlyIf(() -> !exists || sync.isFallback())
+                        .run(logger);
+                if (!extract.getEntries().isEmpty()) {
+                    sync.stamp(extract.getEntries());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
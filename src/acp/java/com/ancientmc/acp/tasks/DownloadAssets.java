@@ -0,0 +1,151 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.AssetStore;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.init.step.DownloadAssetsStep;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Downloads the game's assets into the run directory. Only the game itself needs them, so this is a task of its own that
+ * runClient depends on, instead of something every configuration or decompile has to wait for.
+ * The download is submitted to the worker API, which lets Gradle run other tasks of the project (such as the decompile
+ * chain) while it is in progress.
+ * @see DownloadAssetsStep
+ */
+public abstract class DownloadAssets extends DefaultTask {
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersionJson().set(getVersionJson());
+            params.getRunDir().set(getRunDir());
+            params.getStoreDir().set(getStoreDir());
+            params.getThreads().set(getThreads());
+            params.getDownloadService().set(getDownloadService());
+            params.getMetadataService().set(getMetadataService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version JSON, which points to the asset index.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * The run directory. The asset index and its stamp file are kept here.
+     */
+    @Internal
+    public abstract DirectoryProperty getRunDir();
+
+    /**
+     * The resources directory within the run directory, which receives the assets.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getResourcesDir();
+
+    /**
+     * The root of the shared asset store.
+     */
+    @Internal
+    public abstract DirectoryProperty getStoreDir();
+
+    /**
+     * The maximum number of assets downloaded at once.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        RegularFileProperty getVersionJson();
+
+        DirectoryProperty getRunDir();
+
+        DirectoryProperty getStoreDir();
+
+        Property<Integer> getThreads();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<VersionMetadataService> getMetadataService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            DownloadService downloads = params.getDownloadService().get();
+
+            try {
+                new DownloadAssetsStep()
+                        .setIndex(Json.getAssetIndexUrl(params.getMetadataService().get().get(params.getVersionJson().get().getAsFile())))
+                        .setOutput(params.getRunDir().get().getAsFile())
+                        .setThreads(params.getThreads().get())
+                        .setStore(new AssetStore(params.getStoreDir().get().getAsFile(), downloads))
+                        .setDownloads(downloads)
+                        .setMirrors(params.getMirrors().get())
+                        .setMessage("Downloading assets")
+                        .setReport(params.getReportService().getOrNull(), params.getTaskPath().get())
+                        .run(Logging.getLogger(DownloadAssets.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.init.step.DownloadJarStep;
+import com.ancientmc.acp.init.step.StepJournal;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.VersionMetadata;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Downloads the client JAR listed in the version JSON.
+ * @see DownloadJarStep
+ */
+public abstract class DownloadClientJar extends DefaultTask {
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersion().set(getVersion());
+            params.getVersionJson().set(getVersionJson());
+            params.getOutput().set(getOutput());
+            params.getJournal().set(getJournal());
+            params.getDownloadService().set(getDownloadService());
+            params.getMetadataService().set(getMetadataService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version.
+     */
+    @Input
+    public abstract Property<String> getVersion();
+
+    /**
+     * The Minecraft version JSON, which points to the JAR.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * The client JAR.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutput();
+
+    /**
+     * The journal of the steps this task runs, see {@link StepJournal}.
+     */
+    @Internal
+    public abstract RegularFileProperty getJournal();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        Property<String> getVersion();
+
+        RegularFileProperty getVersionJson();
+
+        RegularFileProperty getOutput();
+
+        RegularFileProperty getJournal();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<VersionMetadataService> getMetadataService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            DownloadService downloads = params.getDownloadService().get();
+
+            try {
+                VersionMetadata json = params.getMetadataService().get().get(params.getVersionJson().get().getAsFile());
+                new DownloadJarStep()
+                        .setInput(params.getMirrors().get().resolve(Json.getJarUrl(json, "client"), downloads))
+                        .setSha1(Json.getJarSha1(json, "client"))
+                        .setOutput(params.getOutput().get().getAsFile().getParentFile())
+                        .setVersion(params.getVersion().get())
+                        .setDownloads(downloads)
+                        .setMessage("Downloading client JAR")
+                        .setJournal(StepJournal.open(params.getJournal().get().getAsFile()))
+                        .setReport(params.getReportService().getOrNull(), params.getTaskPath().get())
+                        .run(Logging.getLogger(DownloadClientJar.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.init.step.DownloadFileStep;
+import com.ancientmc.acp.init.step.StepJournal;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.VersionMetadata;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+
+/**
+ * Downloads the version JSON of the workspace's Minecraft version, which is looked up in Mojang's version manifest.
+ * The task is up-to-date as long as the JSON exists for the same version, so the manifest is only fetched when the
+ * version changes.
+ */
+public abstract class DownloadVersionJson extends DefaultTask {
+    /**
+     * The URL of Mojang's version manifest.
+     */
+    private static final String MANIFEST_URL = "https://piston-meta.mojang.com/mc/game/version_manifest_v2.json";
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersion().set(getVersion());
+            params.getManifest().set(getManifest());
+            params.getOutput().set(getOutput());
+            params.getTtl().set(getTtl());
+            params.getJournal().set(getJournal());
+            params.getDownloadService().set(getDownloadService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version.
+     */
+    @Input
+    public abstract Property<String> getVersion();
+
+    /**
+     * The downloaded version manifest.
+     */
+    @Internal
+    public abstract RegularFileProperty getManifest();
+
+    /**
+     * The version JSON.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutput();
+
+    /**
+     * How long, in milliseconds, the version manifest is trusted before being revalidated.
+     */
+    @Internal
+    public abstract Property<Long> getTtl();
+
+    /**
+     * The journal of the steps this task runs, see {@link StepJournal}.
+     */
+    @Internal
+    public abstract RegularFileProperty getJournal();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        Property<String> getVersion();
+
+        RegularFileProperty getManifest();
+
+        RegularFileProperty getOutput();
+
+        Property<Long> getTtl();
+
+        RegularFileProperty getJournal();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            Logger logger = Logging.getLogger(DownloadVersionJson.class);
+            DownloadService downloads = params.getDownloadService().get();
+            Mirrors mirrors = params.getMirrors().get();
+            String version = params.getVersion().get();
+            ReportService report = params.getReportService().getOrNull();
+
+            try {
+                DownloadFileStep downloadVersionManifest = new DownloadFileStep()
+                        .setInput(mirrors.resolve(new URL(MANIFEST_URL), downloads))
+                        .setOutput(params.getManifest().get().getAsFile())
+                        .setDownloads(downloads)
+                        .setTtl(params.getTtl().get())
+                        .setMessage("Downloading version manifest");
+                downloadVersionManifest.setReport(report, params.getTaskPath().get())
+                        .run(logger);
+
+                VersionMetadata.Artifact entry = Json.getVersionEntry(downloadVersionManifest.getOutput(), version);
+                if (entry == null) {
+                    throw new IOException("Version " + version + " isn't listed in the version manifest");
+                }
+
+                new DownloadFileStep()
+                        .setInput(mirrors.resolve(entry.getUrl(), downloads))
+                        .setSha1(entry.getSha1())
+                        .setOutput(params.getOutput().get().getAsFile())
+                        .setDownloads(downloads)
+                        .setMessage("Downloading version JSON")
+                        .setJournal(StepJournal.open(params.getJournal().get().getAsFile()))
+                        .setReport(report, params.getTaskPath().get())
+                        .run(logger);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.download.NativesCache;
+import com.ancientmc.acp.init.step.ExtractNativesStep;
+import com.ancientmc.acp.init.step.StepJournal;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.Util;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Downloads and extracts the LWJGL natives for the current operating system. Like {@link DownloadAssets}, only runClient
+ * needs them, and the work runs in the background through the worker API. The natives are kept in a cache shared by all
+ * workspaces and linked into the run directory.
+ * @see ExtractNativesStep
+ */
+public abstract class ExtractNatives extends DefaultTask {
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersionJson().set(getVersionJson());
+            params.getOutputDir().set(getOutputDir());
+            params.getCacheDir().set(getCacheDir());
+            params.getJournal().set(getJournal());
+            params.getDownloadService().set(getDownloadService());
+            params.getMetadataService().set(getMetadataService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version JSON, which lists the natives.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * The natives directory (run\bin\natives).
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    /**
+     * The root of the shared natives cache.
+     */
+    @Internal
+    public abstract DirectoryProperty getCacheDir();
+
+    /**
+     * The journal of the steps this task runs, see {@link StepJournal}.
+     */
+    @Internal
+    public abstract RegularFileProperty getJournal();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        RegularFileProperty getVersionJson();
+
+        DirectoryProperty getOutputDir();
+
+        DirectoryProperty getCacheDir();
+
+        RegularFileProperty getJournal();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<VersionMetadataService> getMetadataService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+
+            try {
+                new ExtractNativesStep()
+                        .setUrls(Json.getNativeUrls(params.getMetadataService().get().get(params.getVersionJson().get().getAsFile())))
+                        .setCache(new NativesCache(params.getCacheDir().get().getAsFile(), Util.getOSName(), Json.getLwjglVersion(),
+                                params.getDownloadService().get(), params.getMirrors().get()))
+                        .setOutput(params.getOutputDir().get().getAsFile())
+                        .setMessage("Extracting natives")
+                        .setJournal(StepJournal.open(params.getJournal().get().getAsFile()))
+                        .setReport(params.getReportService().getOrNull(), params.getTaskPath().get())
+                        .run(Logging.getLogger(ExtractNatives.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,20 +1,30 @@
 package com.ancientmc.acp.tasks;
 
-import com.ancientmc.acp.util.Paths;
+import com.ancientmc.acp.util.ClassDataArchive;
+import com.ancientmc.acp.util.Events;
+import com.ancientmc.acp.util.ReportService;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.Project;
-import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.ExecOperations;
+import org.gradle.workers.WorkerExecutor;
 
+import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,6 +35,19 @@ import java.util.stream.Collectors;
  * makes temporary JAR files for each implemented LZMA.
  */
 public abstract class InjectModPatches extends DefaultTask {
+    /**
+     * The main class of the binary patcher.
+     */
+    static final String BINPATCHER = "net.neoforged.binarypatcher.ConsoleTool";
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
 
     @TaskAction
     public void exec() {
@@ -47,22 +70,27 @@ public abstract class InjectModPatches extends DefaultTask {
      * @param output The final output JAR file (${version}-mod.jar).
      */
     public void run(File input, File dir, File output) throws IOException {
-        Project project = getProject();
         List<File> files = getFiles(dir);
 
         files.forEach(lzma -> {
             File currIn = getCurrentInput(input, files, lzma);
             File currOut = getCurrentOutput(output, files, lzma);
 
-            project.javaexec(action -> {
-                Configuration binpatch = project.getConfigurations().getByName("binpatch");
-                action.getMainClass().set("net.neoforged.binarypatcher.ConsoleTool");
-                action.setClasspath(project.files(binpatch));
-                action.args("--clean", currIn.getAbsolutePath(), "--apply", lzma.getAbsolutePath(), "--output", currOut.getAbsolutePath(), "--unpatched");
-            });
+            List<String> args = Arrays.asList("--clean", currIn.getAbsolutePath(), "--apply", lzma.getAbsolutePath(), "--output", currOut.getAbsolutePath(), "--unpatched");
+
+            try (Events.Span ignored = Events.tool(getPath(), "binpatch")) {
+                // Each patch applies to the output of the previous one.
+                ClassDataArchive archive = ClassDataArchive.ofCurrentJvm(getClassDataDir().getAsFile().getOrNull(), "binpatch",
+                        getCoordinate().getOrNull(), getClasspath());
+                boolean forked = ToolExec.run(getExecOperations(), getWorkerExecutor(), getMode().getOrElse(ToolExec.Mode.FORK).forTool("binpatch"), getClasspath(),
+                        BINPATCHER, args, archive);
+                if (forked && getReportService().isPresent()) {
+                    getReportService().get().forked(getPath(), 1);
+                }
+            }
         });
 
-        FileUtils.deleteDirectory(project.file(Paths.DIR_TEMP + "modjars/"));
+        getFileSystemOperations().delete(spec -> spec.delete(getTempDir()));
     }
 
     public List<File> getFiles(File directory) {
@@ -81,7 +109,7 @@ public abstract class InjectModPatches extends DefaultTask {
      * @return The current input for injection.
      */
     public File getCurrentInput(File input, List<File> files, File lzma) {
-        File temp = getProject().file(Paths.DIR_TEMP + "modjars/temp" + files.indexOf(lzma) + ".jar");
+        File temp = new File(getTempDir(), "temp" + files.indexOf(lzma) + ".jar");
         return files.indexOf(lzma) == 0 ? input : temp;
     }
 
@@ -95,15 +123,22 @@ public abstract class InjectModPatches extends DefaultTask {
      * @return The current output after injection.
      */
     public File getCurrentOutput(File output, List<File> files, File lzma) {
-        File temp = getProject().file(Paths.DIR_TEMP + "modjars/temp" + (files.indexOf(lzma) + 1) + ".jar");
+        File temp = new File(getTempDir(), "temp" + (files.indexOf(lzma) + 1) + ".jar");
         return files.indexOf(lzma) == files.size() - 1 ? output : temp;
     }
 
+    /**
+     * The directory holding the intermediate JARs, within the task's temporary directory.
+     */
+    private File getTempDir() {
+        return new File(getTemporaryDir(), "modjars/");
+    }
+
     /**
      * We want to compare the LZMA files to ensure that the ModLoader JAR is the first element in the list, and therefore is injected
      * first. This comparator does that and gets called above for sorting.
      */
-    private static class LzmaComparator implements Comparator<File> {
+    static class LzmaComparator implements Comparator<File> {
         @Override
         public int compare(File o1, File o2) {
             return o1.getName().contains("modloader") ? -1 : 0;
@@ -122,9 +157,40 @@ public abstract class InjectModPatches extends DefaultTask {
     @InputDirectory
     public abstract RegularFileProperty getPatchDir();
 
+    /**
+     * The classpath of the binary patcher (the binpatch configuration).
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
     /**
      * The output JAR containing the mod classes (${version}-mod.jar).
      */
     @OutputFile
     public abstract RegularFileProperty getOutputJar();
+
+    /**
+     * How the patcher runs, see {@link ToolExec.Mode}. Defaults to {@link ToolExec.Mode#FORK}.
+     */
+    @Internal
+    public abstract Property<ToolExec.Mode> getMode();
+
+    /**
+     * The coordinate of the patcher, from gradle.properties. Part of the key of its class data archive. Optional.
+     */
+    @Internal
+    public abstract Property<String> getCoordinate();
+
+    /**
+     * The directory of the class data archives of forked tools, see {@link ClassDataArchive}. Class data sharing is
+     * off if it isn't set.
+     */
+    @Internal
+    public abstract DirectoryProperty getClassDataDir();
+
+    /**
+     * The build report the forked patcher JVMs are counted in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadQueue;
+import com.ancientmc.acp.download.Downloads;
+import com.ancientmc.acp.util.DependencyLock;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.Util;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves Minecraft's libraries and ACP's tools through the repositories, and pins the result in acp.lock.json: every
+ * artifact (transitive ones included), the URL it was found at, and its SHA-1. The lockfile is meant to be committed
+ * with the workspace, so that the next setup prefetches the exact same files instead of resolving anything.
+ * @see DependencyLock
+ */
+public abstract class LockAcpDependencies extends DefaultTask {
+
+    public LockAcpDependencies() {
+        // The repositories may have changed even when the requested coordinates didn't.
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @TaskAction
+    public void exec() throws IOException {
+        VersionMetadataService metadata = getMetadataService().get();
+        List<String> libraries = Json.getLibraries(Arrays.asList(metadata.get(getVersionJson().get().getAsFile()),
+                metadata.get(getJarDependencies().get().getAsFile())));
+        Map<String, List<String>> requested = DependencyLock.getRequested(libraries, getTools().get());
+
+        List<URI> repositories = new ArrayList<>();
+        getProject().getRepositories().withType(MavenArtifactRepository.class).forEach(repo -> repositories.add(repo.getUrl()));
+
+        DependencyLock lock = new DependencyLock();
+        DownloadQueue queue = new DownloadQueue(getThreads().get());
+
+        for (Map.Entry<String, List<String>> cfg : requested.entrySet()) {
+            DependencyLock.Entry entry = lock.getConfiguration(cfg.getKey());
+            entry.setRequested(cfg.getValue());
+
+            Dependency[] dependencies = cfg.getValue().stream()
+                    .map(coordinate -> getProject().getDependencies().create(coordinate))
+                    .toArray(Dependency[]::new);
+            Configuration detached = getProject().getConfigurations().detachedConfiguration(dependencies);
+
+            for (ResolvedArtifact artifact : detached.getResolvedConfiguration().getResolvedArtifacts()) {
+                if (!(artifact.getId().getComponentIdentifier() instanceof ModuleComponentIdentifier)) {
+                    continue;
+                }
+                ModuleComponentIdentifier id = (ModuleComponentIdentifier) artifact.getId().getComponentIdentifier();
+                String classifier = artifact.getClassifier() != null ? "-" + artifact.getClassifier() : "";
+                String file = id.getModule() + '-' + id.getVersion() + classifier + '.' + artifact.getExtension();
+                String path = id.getGroup().replace('.', '/') + '/' + id.getModule() + '/' + id.getVersion() + '/' + file;
+                String coordinate = id.getGroup() + ':' + id.getModule() + ':' + id.getVersion()
+                        + (artifact.getClassifier() != null ? ":" + artifact.getClassifier() : "") + '@' + artifact.getExtension();
+
+                queue.submit(coordinate, () -> {
+                    URL url = findArtifact(repositories, path);
+                    entry.addArtifact(new DependencyLock.Artifact(coordinate, file, url.toString(), Util.sha1(artifact.getFile())));
+                });
+            }
+        }
+
+        queue.await();
+        lock.write(getLockFile().get().getAsFile());
+        getLogger().lifecycle("Locked " + requested.size() + " configurations in " + DependencyLock.FILE_NAME);
+    }
+
+    /**
+     * Finds the first repository that has an artifact. Gradle doesn't tell which repository an artifact came from, so
+     * they are asked again in declaration order.
+     */
+    private static URL findArtifact(List<URI> repositories, String path) throws IOException {
+        for (URI repository : repositories) {
+            String base = repository.toString().endsWith("/") ? repository.toString() : repository + "/";
+            URL url = new URL(base + path);
+            try {
+                if (Downloads.exists(url)) {
+                    return url;
+                }
+            } catch (IOException e) {
+                // Unreachable repository, try the next one.
+            }
+        }
+        throw new IOException("No repository has " + path);
+    }
+
+    /**
+     * The Minecraft version JSON, which lists the libraries.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * ACP's additional library list for the version.
+     */
+    @InputFile
+    public abstract RegularFileProperty getJarDependencies();
+
+    /**
+     * The tools, keyed by configuration name.
+     */
+    @Input
+    public abstract MapProperty<String, String> getTools();
+
+    /**
+     * The maximum number of repositories asked at once.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The lockfile.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getLockFile();
+}
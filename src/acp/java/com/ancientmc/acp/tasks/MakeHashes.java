@@ -1,5 +1,6 @@
 package com.ancientmc.acp.tasks;
 
+import com.ancientmc.acp.util.Events;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
@@ -42,24 +43,29 @@ public abstract class MakeHashes extends DefaultTask {
 
     /**
      * Main execution method for the text file generation. A map gets generated and is then written out as a text file.
+     * Hashing and writing are flight recorder events of their own, see {@link Events}.
      * @param directory The directory containing the class files.
      * @param out The output text file containing the hash values.
      * @throws IOException
      */
-    public static void run(File directory, File out) throws IOException {
+    public void run(File directory, File out) throws IOException {
         Map<String, String> map = new HashMap<>();
-        Collection<File> classes = FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, DirectoryFileFilter.DIRECTORY);
+        try (Events.Span span = Events.phase(getPath(), "hash")) {
+            Collection<File> classes = FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, DirectoryFileFilter.DIRECTORY);
 
-        classes.forEach(cls -> {
-            String hash = getHash(cls);
-            String name = cls.getAbsolutePath();
-            name = name.replace(".class", "")
-                    .replace(directory.getAbsolutePath() + File.separator, "")
-                    .replace(File.separator, "/");
-            map.put(name, hash);
-        });
+            classes.forEach(cls -> {
+                String hash = getHash(cls);
+                String name = cls.getAbsolutePath();
+                name = name.replace(".class", "")
+                        .replace(directory.getAbsolutePath() + File.separator, "")
+                        .replace(File.separator, "/");
+                map.put(name, hash);
+            });
+            span.setFiles(classes.size());
+        }
 
-        try (FileWriter writer = new FileWriter(out)) {
+        try (Events.Span ignored = Events.phase(getPath(), "write");
+             FileWriter writer = new FileWriter(out)) {
             map.forEach((name, hash) -> {
                 try {
                     writer.write(name + " " + hash + "\n");
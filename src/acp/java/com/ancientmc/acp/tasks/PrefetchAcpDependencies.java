@@ -0,0 +1,167 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.init.step.PrefetchStep;
+import com.ancientmc.acp.util.DependencyLock;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Downloads the libraries and tools pinned in acp.lock.json into the shared artifact cache, so that their
+ * configurations get the pinned files instead of resolving through the repositories. Does nothing without a lockfile.
+ * <p>
+ * The task has no outputs since the cache is shared, so it always runs; with everything cached it only reads the lockfile.
+ * @see PrefetchStep
+ */
+public abstract class PrefetchAcpDependencies extends DefaultTask {
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersionJson().set(getVersionJson());
+            params.getJarDependencies().set(getJarDependencies());
+            params.getLockFile().set(getLockFile());
+            params.getTools().set(getTools());
+            params.getCacheDir().set(getCacheDir());
+            params.getThreads().set(getThreads());
+            params.getDownloadService().set(getDownloadService());
+            params.getMetadataService().set(getMetadataService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version JSON, which lists the libraries.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * ACP's additional library list for the version.
+     */
+    @InputFile
+    public abstract RegularFileProperty getJarDependencies();
+
+    /**
+     * The lockfile, which may not exist.
+     */
+    @Internal
+    public abstract RegularFileProperty getLockFile();
+
+    /**
+     * The tools, keyed by configuration name.
+     */
+    @Input
+    public abstract MapProperty<String, String> getTools();
+
+    /**
+     * The root of the shared artifact cache.
+     */
+    @Internal
+    public abstract DirectoryProperty getCacheDir();
+
+    /**
+     * The maximum number of artifacts downloaded at once.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the steps are timed in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        RegularFileProperty getVersionJson();
+
+        RegularFileProperty getJarDependencies();
+
+        RegularFileProperty getLockFile();
+
+        MapProperty<String, String> getTools();
+
+        DirectoryProperty getCacheDir();
+
+        Property<Integer> getThreads();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<VersionMetadataService> getMetadataService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            VersionMetadataService metadata = params.getMetadataService().get();
+
+            try {
+                List<String> libraries = Json.getLibraries(Arrays.asList(metadata.get(params.getVersionJson().get().getAsFile()),
+                        metadata.get(params.getJarDependencies().get().getAsFile())));
+                new PrefetchStep()
+                        .setInput(params.getLockFile().get().getAsFile())
+                        .setOutput(params.getCacheDir().get().getAsFile())
+                        .setRequested(DependencyLock.getRequested(libraries, params.getTools().get()))
+                        .setThreads(params.getThreads().get())
+                        .setDownloads(params.getDownloadService().get())
+                        .setMirrors(params.getMirrors().get())
+                        .setMessage("Prefetching locked dependencies")
+                        .setReport(params.getReportService().getOrNull(), params.getTaskPath().get())
+                        .run(Logging.getLogger(PrefetchAcpDependencies.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
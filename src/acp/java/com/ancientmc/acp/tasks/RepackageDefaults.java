@@ -31,11 +31,11 @@ public abstract class RepackageDefaults extends DefaultTask {
                     String name = file.getName();
 
                     // Creates a temp file that we will add the package header to.
-                    File temp = getProject().file(out.getPath() + "/temp-" + name);
+                    File temp = new File(out, "temp-" + name);
                     writeFile(file, temp, "package net.minecraft.src;\n\n");
 
                     // Moves the temp file to the endpoint path in net/minecraft/src, and then deletes the temp file.
-                    File newFile = getProject().file(out.getPath() + "/net/minecraft/src/" + name);
+                    File newFile = new File(out, "net/minecraft/src/" + name);
                     writeFile(temp, newFile, "");
                 }
             }
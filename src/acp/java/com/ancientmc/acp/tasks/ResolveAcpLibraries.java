@@ -0,0 +1,251 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.download.DownloadQueue;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Downloads;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.util.DependencyLock;
+import com.ancientmc.acp.util.Json;
+import com.ancientmc.acp.util.ReportService;
+import com.ancientmc.acp.util.Util;
+import com.ancientmc.acp.util.VersionMetadata;
+import com.ancientmc.acp.util.VersionMetadataService;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads Minecraft's libraries and links them into the libraries directory, which is the implementation
+ * configuration's view of them. The libraries are only known once the version JSON is downloaded, which is after Gradle
+ * resolved the configuration to build the task graph, so they are added as the output of this task instead of as
+ * dependencies.
+ * <p>
+ * If they were pinned in acp.lock.json, the prefetched files are used. Otherwise, each library is downloaded from the
+ * first of the project's maven repositories that has it, into a cache shared by every workspace. Like the launcher, only
+ * the listed libraries are downloaded, since the version JSON lists every library the game needs. Libraries without a
+ * JAR of their own (natives only) are skipped.
+ */
+public abstract class ResolveAcpLibraries extends DefaultTask {
+
+    @TaskAction
+    public void exec() {
+        getWorkerExecutor().noIsolation().submit(Action.class, params -> {
+            params.getVersionJson().set(getVersionJson());
+            params.getJarDependencies().set(getJarDependencies());
+            params.getLockFile().set(getLockFile());
+            params.getRepositories().set(getRepositories());
+            params.getCacheDir().set(getCacheDir());
+            params.getOutputDir().set(getOutputDir());
+            params.getThreads().set(getThreads());
+            params.getDownloadService().set(getDownloadService());
+            params.getMetadataService().set(getMetadataService());
+            params.getMirrors().set(getMirrors());
+            params.getReportService().set(getReportService());
+            params.getTaskPath().set(getPath());
+        });
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * The Minecraft version JSON, which lists the libraries.
+     */
+    @InputFile
+    public abstract RegularFileProperty getVersionJson();
+
+    /**
+     * ACP's additional library list for the version.
+     */
+    @InputFile
+    public abstract RegularFileProperty getJarDependencies();
+
+    /**
+     * The lockfile, which may not exist.
+     */
+    @Internal
+    public abstract RegularFileProperty getLockFile();
+
+    /**
+     * The URLs of the project's maven repositories, in declaration order.
+     */
+    @Input
+    public abstract ListProperty<String> getRepositories();
+
+    /**
+     * The root of the shared caches (the locked artifacts are in repo/, the other libraries in libraries/).
+     */
+    @Internal
+    public abstract DirectoryProperty getCacheDir();
+
+    /**
+     * The directory the libraries are linked into.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    /**
+     * The maximum number of libraries downloaded at once.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The shared service that parses the version JSON.
+     */
+    @Internal
+    public abstract Property<VersionMetadataService> getMetadataService();
+
+    /**
+     * The mirrors to download from.
+     */
+    @Input
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the downloads are counted in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
+    public interface Params extends WorkParameters {
+        RegularFileProperty getVersionJson();
+
+        RegularFileProperty getJarDependencies();
+
+        RegularFileProperty getLockFile();
+
+        ListProperty<String> getRepositories();
+
+        DirectoryProperty getCacheDir();
+
+        DirectoryProperty getOutputDir();
+
+        Property<Integer> getThreads();
+
+        Property<DownloadService> getDownloadService();
+
+        Property<VersionMetadataService> getMetadataService();
+
+        Property<Mirrors> getMirrors();
+
+        Property<ReportService> getReportService();
+
+        Property<String> getTaskPath();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            VersionMetadataService metadata = params.getMetadataService().get();
+            File cacheDir = params.getCacheDir().get().getAsFile();
+            File outputDir = params.getOutputDir().get().getAsFile();
+
+            try {
+                List<VersionMetadata> jsons = Arrays.asList(metadata.get(params.getVersionJson().get().getAsFile()),
+                        metadata.get(params.getJarDependencies().get().getAsFile()));
+                List<String> libraries = Json.getLibraries(jsons);
+                List<File> files = DependencyLock.getCachedFiles(params.getLockFile().get().getAsFile(), new File(cacheDir, "repo/"),
+                        "implementation", libraries);
+                long downloaded = 0;
+                if (files == null) {
+                    files = new ArrayList<>();
+                    downloaded = download(libraries, Json.getNativeLibraries(jsons), new File(cacheDir, "libraries/"), files);
+                }
+
+                FileUtils.cleanDirectory(outputDir);
+                for (File file : files) {
+                    Util.link(file, new File(outputDir, file.getName()));
+                }
+                if (params.getReportService().isPresent()) {
+                    params.getReportService().get().downloaded(params.getTaskPath().get(), downloaded);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Downloads the libraries that aren't in the cache yet.
+         * @param libraries The maven paths of the libraries.
+         * @param natives The libraries that list native JARs, which may have no JAR of their own.
+         * @param cacheDir The cache, laid out like a maven repository.
+         * @param files Receives the cached files of the libraries.
+         * @return The number of bytes downloaded.
+         * @throws IOException If a library couldn't be downloaded.
+         */
+        private long download(List<String> libraries, Set<String> natives, File cacheDir, List<File> files) throws IOException {
+            Params params = getParameters();
+            DownloadService downloads = params.getDownloadService().get();
+            AtomicLong bytes = new AtomicLong();
+            List<File> found = new ArrayList<>();
+            DownloadQueue queue = new DownloadQueue(params.getThreads().get());
+
+            for (String library : libraries) {
+                String path = Util.toMavenPath(library, "jar");
+                File file = new File(cacheDir, path);
+                found.add(file);
+                if (file.isFile()) {
+                    continue;
+                }
+
+                queue.submit(library, () -> {
+                    IOException unreachable = null;
+                    for (String repository : params.getRepositories().get()) {
+                        URL url = params.getMirrors().get().resolve(new URL(repository + path), downloads);
+                        try {
+                            if (!Downloads.exists(url)) {
+                                continue;
+                            }
+                        } catch (IOException e) {
+                            // Unreachable repository, try the next one.
+                            unreachable = e;
+                            continue;
+                        }
+                        bytes.addAndGet(Math.max(0, downloads.downloadAtomic(url, file, null, null)));
+                        return;
+                    }
+                    if (unreachable != null) {
+                        throw unreachable;
+                    }
+                    if (!natives.contains(library)) {
+                        throw new IOException("No repository has " + path);
+                    }
+                });
+            }
+
+            queue.await();
+            found.stream().filter(File::isFile).forEach(files::add);
+            return bytes.get();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.util.DependencyLock;
+import com.ancientmc.acp.util.Util;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Links the tools pinned in acp.lock.json into a directory per tool configuration, which is the configuration's view of
+ * them. The lockfile and the prefetched artifacts are only read when the task runs, so configuring the project does no
+ * I/O for them.
+ * <p>
+ * Every tool must be pinned for its current coordinate, and all of its artifacts prefetched. Otherwise, the task fails
+ * rather than letting Gradle resolve a different version than the one locked.
+ * @see DependencyLock
+ */
+public abstract class ResolveAcpTools extends DefaultTask {
+
+    @TaskAction
+    public void exec() throws IOException {
+        File lockFile = getLockFile().get().getAsFile();
+        File cacheDir = getCacheDir().get().getAsFile();
+        File outputDir = getOutputDir().get().getAsFile();
+        DependencyLock lock = DependencyLock.read(lockFile);
+
+        FileUtils.cleanDirectory(outputDir);
+        for (Map.Entry<String, String> tool : getTools().get().entrySet()) {
+            DependencyLock.Entry entry = lock == null ? null
+                    : lock.getConfiguration(tool.getKey(), Collections.singletonList(tool.getValue()));
+            if (entry == null) {
+                throw new IOException(DependencyLock.FILE_NAME + " doesn't pin " + tool.getValue() + " for " + tool.getKey()
+                        + ", run lockAcpDependencies to update it");
+            }
+
+            for (DependencyLock.Artifact artifact : entry.getArtifacts()) {
+                File file = DependencyLock.getCachedFile(cacheDir, artifact);
+                if (!file.isFile()) {
+                    throw new IOException(artifact.coordinate + " wasn't prefetched for " + tool.getKey());
+                }
+                Util.link(file, new File(outputDir, tool.getKey() + '/' + artifact.file));
+            }
+        }
+    }
+
+    /**
+     * The lockfile.
+     */
+    @InputFile
+    public abstract RegularFileProperty getLockFile();
+
+    /**
+     * The tool coordinates, keyed by configuration name.
+     * @see DependencyLock#getTools
+     */
+    @Input
+    public abstract MapProperty<String, String> getTools();
+
+    /**
+     * The root of the shared artifact cache the locked tools are prefetched into.
+     */
+    @Internal
+    public abstract DirectoryProperty getCacheDir();
+
+    /**
+     * The directory the tools are linked into, in a directory per configuration.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+}
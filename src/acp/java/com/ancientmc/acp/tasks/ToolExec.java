@@ -0,0 +1,332 @@
+package com.ancientmc.acp.tasks;
+
+import com.ancientmc.acp.util.ClassDataArchive;
+import com.ancientmc.acp.util.Events;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.JavaExec;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.CommandLineArgumentProvider;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Runs one of the tools of ACP or modtools (jarsplitter, fernflower, diffpatch...). Each run is a flight recorder
+ * event, so the tool shows up in a recording of the Gradle daemon, see {@link Events}.
+ * <p>
+ * How the tool runs depends on the {@link Mode}. By default, it is forked into a JVM of its own, like any JavaExec.
+ * Forks on Java 13 and up share a class data archive of the tool if {@link #getClassDataDir()} is set.
+ */
+public abstract class ToolExec extends JavaExec {
+    /**
+     * Adds the class data archive's JVM arguments to the fork.
+     */
+    private final ClassDataArgs classData;
+
+    public ToolExec() {
+        classData = new ClassDataArgs(getMode(), getTool(), getCoordinate(), getClassDataDir(), getJavaLauncher(), getClasspath());
+        getJvmArgumentProviders().add(classData);
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @Override
+    @TaskAction
+    public void exec() {
+        try (Events.Span ignored = Events.tool(getPath(), getTool().get())) {
+            Mode mode = getEffectiveMode();
+            if (mode == Mode.FORK) {
+                try {
+                    super.exec();
+                    classData.commit();
+                } finally {
+                    classData.discard();
+                }
+                return;
+            }
+
+            List<String> args = new ArrayList<>(getArgs());
+            for (CommandLineArgumentProvider provider : getArgumentProviders()) {
+                provider.asArguments().forEach(args::add);
+            }
+            // The task waits for the tool, so that its outputs are complete when the task's own actions run.
+            submit(getWorkerExecutor(), mode, getClasspath(), fork -> {
+                configureFork(fork, getJavaLauncher().get(), getMinHeapSize(), getMaxHeapSize(), getJvmArgs());
+                fork.systemProperties(getSystemProperties());
+            }, getMainClass().get(), args).await();
+        }
+    }
+
+    /**
+     * Runs a tool from a task of its own. Forked tools run on the JVM running Gradle, with its class data archive if
+     * there is one.
+     * @param exec The exec operations, used by forked tools.
+     * @param executor The worker executor, used by the other modes.
+     * @param mode How the tool runs.
+     * @param classpath The tool's classpath.
+     * @param mainClass The tool's main class.
+     * @param args The tool's arguments.
+     * @param archive The class data archive of the forked tool, or null.
+     * @return True if the tool was forked.
+     */
+    public static boolean run(ExecOperations exec, WorkerExecutor executor, Mode mode, FileCollection classpath, String mainClass, List<String> args,
+                              ClassDataArchive archive) {
+        if (mode != Mode.FORK) {
+            submit(executor, mode, classpath, fork -> {}, mainClass, args).await();
+            return false;
+        }
+
+        try {
+            exec.javaexec(action -> {
+                action.getMainClass().set(mainClass);
+                action.setClasspath(classpath);
+                action.args(args);
+                if (archive != null) {
+                    action.jvmArgs((Object[]) archive.getJvmArgs());
+                }
+            });
+            if (archive != null) {
+                archive.commit();
+            }
+        } finally {
+            if (archive != null) {
+                archive.discard();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calls a tool's main class in a worker with the tool's classpath.
+     * @param executor The worker executor.
+     * @param mode How the tool runs, either {@link Mode#IN_PROCESS} or {@link Mode#POOLED}.
+     * @param classpath The tool's classpath.
+     * @param fork Configures the JVM of a pooled tool. Pooled JVMs are shared by every run with the same options.
+     * @param mainClass The tool's main class.
+     * @param args The tool's arguments.
+     * @return The queue the tool was submitted to.
+     */
+    public static WorkQueue submit(WorkerExecutor executor, Mode mode, Iterable<File> classpath, org.gradle.api.Action<? super JavaForkOptions> fork,
+                                   String mainClass, List<String> args) {
+        WorkQueue queue = mode == Mode.POOLED
+                ? executor.processIsolation(spec -> {
+                    spec.getClasspath().from(classpath);
+                    spec.forkOptions(fork);
+                })
+                : executor.classLoaderIsolation(spec -> spec.getClasspath().from(classpath));
+        queue.submit(Action.class, params -> {
+            params.getMainClass().set(mainClass);
+            params.getArgs().set(args);
+        });
+        return queue;
+    }
+
+    /**
+     * Sets up the JVM of a pooled tool like the JVM a JavaExec would fork.
+     * @param fork The JVM options of the pooled tool.
+     * @param launcher The Java launcher of the pooled JVM, or null to use the JVM running Gradle.
+     * @param minHeapSize The minimum heap size, or null for the JVM's default.
+     * @param maxHeapSize The maximum heap size, or null for the JVM's default.
+     * @param jvmArgs Additional JVM arguments, or null.
+     */
+    public static void configureFork(JavaForkOptions fork, JavaLauncher launcher, String minHeapSize, String maxHeapSize, List<String> jvmArgs) {
+        if (launcher != null) {
+            fork.setExecutable(launcher.getExecutablePath().getAsFile());
+        }
+        fork.setMinHeapSize(minHeapSize);
+        fork.setMaxHeapSize(maxHeapSize);
+        if (jvmArgs != null) {
+            fork.jvmArgs(jvmArgs);
+        }
+    }
+
+    /**
+     * The name of the tool, usually the name of its configuration.
+     */
+    @Internal
+    public abstract Property<String> getTool();
+
+    /**
+     * The coordinate of the tool, from gradle.properties. Part of the key of its class data archive. Optional.
+     */
+    @Internal
+    public abstract Property<String> getCoordinate();
+
+    /**
+     * The directory of the class data archives of forked tools, see {@link ClassDataArchive}. Class data sharing is
+     * off if it isn't set.
+     */
+    @Internal
+    public abstract DirectoryProperty getClassDataDir();
+
+    /**
+     * How the tool runs. Defaults to {@link Mode#FORK}.
+     */
+    @Internal
+    public abstract Property<Mode> getMode();
+
+    /**
+     * Gets the mode the tool actually runs in, see {@link Mode#forTool(String)}.
+     * @return The mode.
+     */
+    @Internal
+    public Mode getEffectiveMode() {
+        return getMode().getOrElse(Mode.FORK).forTool(getTool().get());
+    }
+
+    /**
+     * The ways a tool can run.
+     */
+    public enum Mode {
+        /**
+         * In a JVM of its own, started for this run only.
+         */
+        FORK,
+        /**
+         * Inside the Gradle daemon, in a worker whose classloader only sees the tool's classpath. That skips the JVM
+         * start and reuses the daemon's warm JIT, but the JVM arguments and system properties of the task are ignored,
+         * and a tool calling System.exit would take the daemon down with it. Only the tools known never to exit run in
+         * process, see {@link #forTool(String)}.
+         */
+        IN_PROCESS,
+        /**
+         * In a long-lived worker JVM, which Gradle keeps for later runs of the tool with the same classpath and JVM
+         * options, across builds of the same daemon. Repeated runs get JIT-hot code. A tool calling System.exit would
+         * end the worker JVM mid-build, so only the tools known never to exit run pooled, see {@link #forTool(String)}.
+         */
+        POOLED;
+
+        /**
+         * The tools whose main method returns once it's done, and reports errors by throwing rather than by calling
+         * System.exit:
+         * <ul>
+         *     <li>jarsplitter and binpatch: the ConsoleTools of installertools print their usage on bad options and
+         *     return.</li>
+         *     <li>fernflower: ConsoleDecompiler prints its usage on bad arguments and returns.</li>
+         * </ul>
+         * The other tools exit, or aren't known not to: MCInjector and SpecialSource exit on errors, DiffPatch always
+         * exits with its result, and AutoRenamingTool is left out until it is checked.
+         */
+        private static final Set<String> WORKER_TOOLS = new HashSet<>(Arrays.asList("jarsplitter", "binpatch", "fernflower"));
+
+        /**
+         * Gets the mode a tool actually runs in. Tools that may call System.exit fork instead of running in a worker.
+         * @param tool The name of the tool's configuration.
+         * @return The mode to run the tool in.
+         */
+        public Mode forTool(String tool) {
+            return this != FORK && !WORKER_TOOLS.contains(tool) ? FORK : this;
+        }
+
+        /**
+         * Parses a mode as written in build scripts or gradle.properties, e.g. "pooled" or "in_process".
+         * @param mode The mode.
+         * @return The mode.
+         */
+        public static Mode parse(String mode) {
+            return valueOf(mode.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * The JVM arguments of a forked tool's class data archive, if there is one. Registered when the task is created, so
+     * the task itself is never changed while it runs. The archive is only looked up once the fork starts.
+     */
+    private static class ClassDataArgs implements CommandLineArgumentProvider {
+        private final Property<Mode> mode;
+        private final Property<String> tool;
+        private final Property<String> coordinate;
+        private final DirectoryProperty dir;
+        private final Property<JavaLauncher> launcher;
+        private final FileCollection classpath;
+
+        /**
+         * The archive of the current run, or null if it has none.
+         */
+        private transient ClassDataArchive archive;
+
+        ClassDataArgs(Property<Mode> mode, Property<String> tool, Property<String> coordinate, DirectoryProperty dir,
+                      Property<JavaLauncher> launcher, FileCollection classpath) {
+            this.mode = mode;
+            this.tool = tool;
+            this.coordinate = coordinate;
+            this.dir = dir;
+            this.launcher = launcher;
+            this.classpath = classpath;
+        }
+
+        @Override
+        public Iterable<String> asArguments() {
+            if (archive == null && dir.isPresent() && mode.getOrElse(Mode.FORK).forTool(tool.get()) == Mode.FORK) {
+                JavaInstallationMetadata jvm = launcher.get().getMetadata();
+                archive = ClassDataArchive.of(dir.get().getAsFile(), tool.get(), coordinate.getOrNull(), classpath,
+                        jvm.getLanguageVersion().asInt(), jvm.getInstallationPath().getAsFile());
+            }
+            return archive != null ? Arrays.asList(archive.getJvmArgs()) : Collections.emptyList();
+        }
+
+        /**
+         * Publishes the archive dumped by the fork, see {@link ClassDataArchive#commit()}.
+         */
+        void commit() {
+            if (archive != null) {
+                archive.commit();
+            }
+        }
+
+        /**
+         * Deletes what is left of the dump and forgets the archive, so the next run looks it up again.
+         */
+        void discard() {
+            if (archive != null) {
+                archive.discard();
+                archive = null;
+            }
+        }
+    }
+
+    public interface Params extends WorkParameters {
+        Property<String> getMainClass();
+
+        ListProperty<String> getArgs();
+    }
+
+    public abstract static class Action implements WorkAction<Params> {
+        @Override
+        public void execute() {
+            Params params = getParameters();
+            String mainClass = params.getMainClass().get();
+            try {
+                Class<?> main = Class.forName(mainClass, true, getClass().getClassLoader());
+                Method method = main.getMethod("main", String[].class);
+                method.invoke(null, (Object) params.getArgs().get().toArray(new String[0]));
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(mainClass + " failed", e.getCause());
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Couldn't run " + mainClass, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ancientmc.acp.util;
+
+import com.ancientmc.acp.download.Downloads;
+import org.gradle.api.JavaVersion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+/**
+ * A class data sharing (AppCDS) archive of a tool, shared by every fork of the tool with the same classpath and JVM.
+ * The classes of the tool are only loaded and verified once: the first fork dumps them into the archive when it exits,
+ * and later forks map the archive instead.
+ * <p>
+ * Archives are dumped dynamically, which needs Java 13 or newer. Older JVMs (including Java 8, the default for
+ * workspaces) don't get one, and their tools fork as before. If an archive doesn't fit the JVM using it, the JVM
+ * ignores it and loads the classes as usual.
+ */
+public final class ClassDataArchive {
+    /**
+     * The first Java version able to dump an archive at exit.
+     */
+    public static final int MIN_JAVA_VERSION = 13;
+
+    /**
+     * The archive.
+     */
+    private final File archive;
+
+    /**
+     * Where the fork dumps the archive, if it doesn't exist yet. Moved to the archive once the fork is done, so that
+     * concurrent builds never map a half-written archive.
+     */
+    private final File dump;
+
+    private ClassDataArchive(File archive, File dump) {
+        this.archive = archive;
+        this.dump = dump;
+    }
+
+    /**
+     * Gets the archive of a tool.
+     * @param dir The directory of the archives.
+     * @param tool The name of the tool.
+     * @param coordinate The coordinate of the tool (from gradle.properties), or null if unknown.
+     * @param classpath The resolved classpath of the tool.
+     * @param javaVersion The Java version of the forked JVM.
+     * @param javaHome The installation of the forked JVM.
+     * @return The archive, or null if the JVM can't use one.
+     */
+    public static ClassDataArchive of(File dir, String tool, String coordinate, Iterable<File> classpath, int javaVersion, File javaHome) {
+        if (javaVersion < MIN_JAVA_VERSION) {
+            return null;
+        }
+
+        // The JVM only maps an archive whose classpath is the same as when it was dumped, with the same JARs.
+        MessageDigest digest = Util.sha1();
+        update(digest, String.valueOf(coordinate));
+        update(digest, javaHome.getAbsolutePath());
+        update(digest, javaVersion + ":" + new File(javaHome, "lib/modules").lastModified());
+        for (File file : classpath) {
+            update(digest, file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+        }
+
+        File archive = new File(dir, tool + "-" + Util.toHex(digest.digest()).substring(0, 16) + ".jsa");
+        File dump = archive.isFile() ? null : new File(dir, archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        return new ClassDataArchive(archive, dump);
+    }
+
+    /**
+     * Gets the archive of a tool forked into the JVM running Gradle, like the forks of {@code ExecOperations.javaexec}.
+     * @param dir The directory of the archives, or null if class data sharing is off.
+     * @param tool The name of the tool.
+     * @param coordinate The coordinate of the tool, or null if unknown.
+     * @param classpath The resolved classpath of the tool.
+     * @return The archive, or null if class data sharing is off or the JVM can't use one.
+     */
+    public static ClassDataArchive ofCurrentJvm(File dir, String tool, String coordinate, Iterable<File> classpath) {
+        if (dir == null) {
+            return null;
+        }
+        return of(dir, tool, coordinate, classpath, Integer.parseInt(JavaVersion.current().getMajorVersion()), new File(System.getProperty("java.home")));
+    }
+
+    /**
+     * Gets the JVM arguments of the fork: either mapping the archive, or dumping it at exit. The JVM's own CDS logging
+     * is turned off, since tool output is shown to the user.
+     * @return The JVM arguments.
+     */
+    public String[] getJvmArgs() {
+        if (dump == null) {
+            return new String[] { "-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-Xlog:cds*=off" };
+        }
+        archive.getParentFile().mkdirs();
+        return new String[] { "-XX:ArchiveClassesAtExit=" + dump.getAbsolutePath(), "-Xlog:cds*=off" };
+    }
+
+    /**
+     * Publishes the archive dumped by the fork, if any. Failing to do so only costs the speedup, so it is never an error.
+     */
+    public void commit() {
+        if (dump == null || !dump.isFile()) {
+            return;
+        }
+        try {
+            Downloads.move(dump, archive);
+        } catch (IOException e) {
+            dump.delete();
+        }
+    }
+
+    /**
+     * Deletes what is left of the dump, e.g. after the fork failed. Does nothing once the dump was committed.
+     */
+    public void discard() {
+        if (dump != null) {
+            dump.delete();
+        }
+    }
+
+    /**
+     * Gets the archive.
+     * @return The archive.
+     */
+    public File getArchive() {
+        return archive;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,265 @@
+package com.ancientmc.acp.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The lockfile (acp.lock.json) pinning the Minecraft libraries and ACP tools of a workspace. For each configuration it
+ * lists the coordinates that were requested, and every artifact they resolved to (transitive ones included), with the
+ * URL it was found at and its SHA-1.
+ * <p>
+ * With an up-to-date lockfile, the artifacts are prefetched concurrently into a cache shared between workspaces and
+ * handed to the configurations as plain files, so Gradle doesn't have to resolve anything against the repositories.
+ */
+public class DependencyLock {
+    /**
+     * The name of the lockfile in the project directory.
+     */
+    public static final String FILE_NAME = "acp.lock.json";
+    /**
+     * The prefix of the project properties declaring tools, e.g. tool_fernflower.
+     */
+    private static final String TOOL_PREFIX = "tool_";
+
+    /**
+     * The locked configurations, keyed by name.
+     */
+    private final Map<String, Entry> configurations = new TreeMap<>();
+
+    /**
+     * Reads a lockfile.
+     * @param file The lockfile.
+     * @return The lock, or null if the file doesn't exist.
+     * @throws IOException
+     */
+    public static DependencyLock read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DependencyLock lock = new DependencyLock();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonObject json = new Gson().fromJson(reader, JsonObject.class);
+            for (Map.Entry<String, JsonElement> cfg : json.getAsJsonObject("configurations").entrySet()) {
+                JsonObject object = cfg.getValue().getAsJsonObject();
+                Entry entry = lock.getConfiguration(cfg.getKey());
+
+                object.getAsJsonArray("requested").forEach(element -> entry.requested.add(element.getAsString()));
+                for (JsonElement element : object.getAsJsonArray("artifacts")) {
+                    JsonObject artifact = element.getAsJsonObject();
+                    entry.artifacts.add(new Artifact(artifact.get("coordinate").getAsString(), artifact.get("file").getAsString(),
+                            artifact.get("url").getAsString(), artifact.get("sha1").getAsString()));
+                }
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Writes the lock, sorted so that it diffs cleanly.
+     * @param file The lockfile.
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        JsonObject cfgs = new JsonObject();
+        configurations.forEach((name, entry) -> {
+            JsonArray requested = new JsonArray();
+            entry.requested.forEach(requested::add);
+
+            List<Artifact> sorted = new ArrayList<>(entry.artifacts);
+            sorted.sort((a, b) -> a.coordinate.compareTo(b.coordinate));
+
+            JsonArray artifacts = new JsonArray();
+            for (Artifact artifact : sorted) {
+                JsonObject object = new JsonObject();
+                object.addProperty("coordinate", artifact.coordinate);
+                object.addProperty("file", artifact.file);
+                object.addProperty("url", artifact.url);
+                object.addProperty("sha1", artifact.sha1);
+                artifacts.add(object);
+            }
+
+            JsonObject object = new JsonObject();
+            object.add("requested", requested);
+            object.add("artifacts", artifacts);
+            cfgs.add(name, object);
+        });
+
+        JsonObject json = new JsonObject();
+        json.add("configurations", cfgs);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+        }
+    }
+
+    /**
+     * Gets the lock of a configuration, creating an empty one if it isn't locked yet.
+     * @param name The configuration name.
+     * @return The lock entry.
+     */
+    public Entry getConfiguration(String name) {
+        return configurations.computeIfAbsent(name, key -> new Entry());
+    }
+
+    /**
+     * Gets the lock of a configuration, but only if it was locked for exactly the given coordinates.
+     * @param name The configuration name.
+     * @param requested The coordinates currently requested for the configuration.
+     * @return The lock entry, or null if it is missing or out of date.
+     */
+    public Entry getConfiguration(String name, List<String> requested) {
+        Entry entry = configurations.get(name);
+        if (entry == null) {
+            return null;
+        }
+
+        List<String> sorted = new ArrayList<>(requested);
+        Collections.sort(sorted);
+        return sorted.equals(entry.requested) ? entry : null;
+    }
+
+    /**
+     * Gets the prefetched files of a configuration, so it can be given the pinned files instead of coordinates.
+     * @param lockFile The lockfile.
+     * @param cacheDir The root of the shared artifact cache.
+     * @param name The configuration name.
+     * @param requested The coordinates currently requested for the configuration.
+     * @return The files, or null if the lock is missing or out of date, or if some artifact wasn't prefetched.
+     * @throws IOException
+     */
+    public static List<File> getCachedFiles(File lockFile, File cacheDir, String name, List<String> requested) throws IOException {
+        DependencyLock lock = read(lockFile);
+        Entry entry = lock == null ? null : lock.getConfiguration(name, requested);
+        if (entry == null) {
+            return null;
+        }
+
+        List<File> files = new ArrayList<>();
+        for (Artifact artifact : entry.artifacts) {
+            File file = getCachedFile(cacheDir, artifact);
+            if (!file.isFile()) {
+                return null;
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Gets where an artifact is stored in the shared cache. Artifacts are stored under their SHA-1
+     * (ab/abcdef.../name.jar), so a file in the cache is always the one that was locked.
+     * @param cacheDir The root of the shared artifact cache.
+     * @param artifact The artifact.
+     * @return The cached file.
+     */
+    public static File getCachedFile(File cacheDir, Artifact artifact) {
+        return new File(cacheDir, artifact.sha1.substring(0, 2) + '/' + artifact.sha1 + '/' + artifact.file);
+    }
+
+    public Map<String, Entry> getConfigurations() {
+        return Collections.unmodifiableMap(configurations);
+    }
+
+    /**
+     * Gets the tools declared in the project properties (usually gradle.properties), e.g.
+     * tool_fernflower=com.ancientmc:fernflower:1.0
+     * @param project The gradle project.
+     * @return The tool coordinates, keyed by configuration name.
+     */
+    public static Map<String, String> getTools(Project project) {
+        Map<String, String> tools = new TreeMap<>();
+        project.getProperties().forEach((key, value) -> {
+            if (key.startsWith(TOOL_PREFIX) && value != null) {
+                tools.put(key.substring(TOOL_PREFIX.length()), value.toString());
+            }
+        });
+        return tools;
+    }
+
+    /**
+     * Gets the coordinates requested for each configuration: Minecraft's libraries for implementation, and one
+     * coordinate for each tool.
+     * @param libraries The library coordinates.
+     * @param tools The tool coordinates, keyed by configuration name.
+     * @return The requested coordinates, keyed by configuration name.
+     */
+    public static Map<String, List<String>> getRequested(List<String> libraries, Map<String, String> tools) {
+        Map<String, List<String>> requested = new TreeMap<>();
+        requested.put("implementation", libraries);
+        tools.forEach((name, tool) -> requested.put(name, Collections.singletonList(tool)));
+        return requested;
+    }
+
+    /**
+     * The lock of a single configuration.
+     */
+    public static class Entry {
+        /**
+         * The requested coordinates, sorted.
+         */
+        private final List<String> requested = new ArrayList<>();
+        /**
+         * The resolved artifacts.
+         */
+        private final List<Artifact> artifacts = new ArrayList<>();
+
+        public void setRequested(List<String> requested) {
+            this.requested.clear();
+            this.requested.addAll(requested);
+            Collections.sort(this.requested);
+        }
+
+        public synchronized void addArtifact(Artifact artifact) {
+            artifacts.add(artifact);
+        }
+
+        public List<Artifact> getArtifacts() {
+            return Collections.unmodifiableList(artifacts);
+        }
+    }
+
+    /**
+     * A resolved artifact.
+     */
+    public static class Artifact {
+        /**
+         * The artifact's coordinate (group:name:version[:classifier]@extension).
+         */
+        public final String coordinate;
+        /**
+         * The artifact's file name.
+         */
+        public final String file;
+        /**
+         * The URL the artifact was found at.
+         */
+        public final String url;
+        /**
+         * The SHA-1 of the artifact.
+         */
+        public final String sha1;
+
+        public Artifact(String coordinate, String file, String url, String sha1) {
+            this.coordinate = coordinate;
+            this.file = file;
+            this.url = url;
+            this.sha1 = sha1;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ancientmc.acp.util;
+
+import java.io.File;
+import java.net.URL;
+
+/**
+ * Java Flight Recorder events for ACP's own work: steps, downloads, tool runs and the phases of the hashing and
+ * archiving tasks. A recording of the Gradle daemon (e.g. started with jcmd &lt;pid&gt; JFR.start) shows them as spans
+ * next to the JVM's own GC and I/O events, under the "ACP" category.
+ * <p>
+ * The events are compiled for Java 11, since jdk.jfr isn't part of the Java 8 API, so they are only created if the
+ * daemon runs on Java 11 or later. Otherwise, every span does nothing.
+ */
+public final class Events {
+    /**
+     * Creates the spans, or null if JFR isn't available.
+     */
+    private static final Factory FACTORY = load();
+    /**
+     * The span used when JFR isn't available.
+     */
+    private static final Span NONE = () -> {};
+
+    private Events() {
+    }
+
+    /**
+     * Starts the span of a step.
+     * @param task The path of the task running the step, or null if it runs outside of a task.
+     * @param step The step type.
+     * @param output The output of the step, or null if it has none.
+     * @return The span, to close once the step is done.
+     */
+    public static Span step(String task, String step, File output) {
+        return FACTORY == null ? NONE : FACTORY.step(task, step, output != null ? output.getPath() : null);
+    }
+
+    /**
+     * Starts the span of a download. The number of bytes transferred is set once it finished.
+     * @param url The URL.
+     * @return The span, to close once the download is done.
+     */
+    public static Span download(URL url) {
+        return FACTORY == null ? NONE : FACTORY.download(url.toString());
+    }
+
+    /**
+     * Starts the span of a tool run, e.g. fernflower.
+     * @param task The path of the task running the tool.
+     * @param tool The tool, usually its configuration name.
+     * @return The span, to close once the tool exited.
+     */
+    public static Span tool(String task, String tool) {
+        return FACTORY == null ? NONE : FACTORY.tool(task, tool);
+    }
+
+    /**
+     * Starts the span of a phase of a task, e.g. hashing the classes. The number of files processed can be set before
+     * it is closed.
+     * @param task The path of the task.
+     * @param phase The phase.
+     * @return The span, to close once the phase is done.
+     */
+    public static Span phase(String task, String phase) {
+        return FACTORY == null ? NONE : FACTORY.phase(task, phase);
+    }
+
+    /**
+     * Loads the JFR events reflectively, so that nothing referencing jdk.jfr is loaded on a JVM that can't run them.
+     */
+    private static Factory load() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (Factory) Class.forName("com.ancientmc.acp.util.JfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * A running event. Closing it ends and commits the event, if it is enabled in the recording.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        /**
+         * Sets the number of bytes transferred or written during the span.
+         * @param bytes The number of bytes.
+         */
+        default void setBytes(long bytes) {
+        }
+
+        /**
+         * Sets the number of files processed during the span.
+         * @param files The number of files.
+         */
+        default void setFiles(long files) {
+        }
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Creates the spans, see {@link JfrEvents}.
+     */
+    interface Factory {
+        Span step(String task, String step, String output);
+
+        Span download(String url);
+
+        Span tool(String task, String tool);
+
+        Span phase(String task, String phase);
+    }
+}
@@ -1,57 +1,76 @@
 package com.ancientmc.acp.util;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import org.gradle.internal.os.OperatingSystem;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
- * Utility class for JSON parsing, mainly Minecraft's version JSON.
+ * Utility class for JSON parsing, mainly Minecraft's version JSON. The version JSON itself is read through
+ * {@link VersionMetadataService}, which parses it once per build; the methods here just pick values out of it.
  */
 public class Json {
     private static final String LWJGL_VERSION = "2.9.0";
     private static final String LWJGL_MAC_VERSION = "2.9.1";
 
     /**
-     * Useful utility method for easily converting a JSON file into a JSON object parsable by Gson.
-     * @param file The JSON file.
-     * @return The JSON file as a Gson object.
-     * @throws IOException
-     */
-    public static JsonObject get(File file) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        return JsonParser.parseReader(reader).getAsJsonObject();
-    }
-
-    /**
-     * Gets the JSON URL for the specified version from the version manifest file.
+     * Finds the entry of the specified version in the version manifest file. The manifest lists every version ever
+     * released and keeps growing, so it is streamed instead of parsed as a whole, and reading stops at the matching entry.
      * @param manifest The version manifest JSON.
      * @param version The Minecraft version, specified in the ACP end-user workspace.
-     * @return The URL for the JSON file on Minecraft's website.
+     * @return The version JSON's URL and SHA-1, or null if the version isn't listed.
+     * @throws IOException
      */
-    public static URL getJsonUrl(File manifest, String version) {
-        try {
-            JsonObject manifestObj = get(manifest);
-            JsonArray versions = manifestObj.getAsJsonArray("versions");
-
-            for (JsonElement entry : versions.asList()) {
-                JsonElement id = entry.getAsJsonObject().get("id");
+    public static VersionMetadata.Artifact getVersionEntry(File manifest, String version) throws IOException {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("versions")) {
+                    reader.skipValue();
+                    continue;
+                }
 
-                if (id.getAsString().equals(version)) {
-                    return new URL(entry.getAsJsonObject().get("url").getAsString());
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String id = null;
+                    String url = null;
+                    String sha1 = null;
+
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "id":
+                                id = reader.nextString();
+                                break;
+                            case "url":
+                                url = reader.nextString();
+                                break;
+                            case "sha1":
+                                sha1 = reader.nextString();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (version.equals(id) && url != null) {
+                        return new VersionMetadata.Artifact(new URL(url), sha1);
+                    }
                 }
+                return null;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
         return null;
@@ -60,20 +79,16 @@ public class Json {
     /**
      * Gets a list of the libraries that will be added as dependencies.
      * All the libraries are formatted as maven paths (group.sub:name:version).
-     * @param jsons The JSON files that the libraries are parsed from. Two JSONS are parsed: Minecraft's Version JSON created by
+     * @param jsons The JSONs that the libraries are parsed from. Two JSONS are parsed: Minecraft's Version JSON created by
      *              Mojang, and a jar dependencies JSON file for libraries that are stored in the Minecraft JAR file (usually sound libraries).
      * @return The list of libraries.
-     * @throws IOException
      */
-    public static List<String> getLibraries(List<File> jsons) throws IOException {
+    public static List<String> getLibraries(Collection<VersionMetadata> jsons) {
         List<String> libList = new ArrayList<>();
 
-        for (File json : jsons) {
-            JsonObject object = get(json);
-            JsonArray libraries = object.getAsJsonArray("libraries");
-
-            for (JsonElement entry : libraries.asList()) {
-                String name = entry.getAsJsonObject().getAsJsonPrimitive("name").getAsString();
+        for (VersionMetadata json : jsons) {
+            for (VersionMetadata.Library library : json.getLibraries()) {
+                String name = library.getName();
 
                 if (!name.startsWith("net.minecraft:launchwrapper") && isAllowed(name)) {
                     libList.add(name);
@@ -84,29 +99,37 @@ public class Json {
         return libList;
     }
 
+    /**
+     * Gets the libraries that list native JARs. Some of them (e.g. LWJGL's platform library) have no JAR of their own.
+     * @param jsons The JSONs that the libraries are parsed from.
+     * @return The maven paths of the libraries.
+     */
+    public static Set<String> getNativeLibraries(Collection<VersionMetadata> jsons) {
+        Set<String> natives = new HashSet<>();
+        for (VersionMetadata json : jsons) {
+            for (VersionMetadata.Library library : json.getLibraries()) {
+                if (library.hasClassifiers()) {
+                    natives.add(library.getName());
+                }
+            }
+        }
+        return natives;
+    }
+
     /**
      * Gets a list of the native URLs from the JSON.
      * @param json The Minecraft version JSON.
      * @return The list of URLs.
-     * @throws IOException
      */
-    public static List<URL> getNativeUrls(File json) throws IOException {
-        JsonObject jsonObj = get(json);
-        JsonArray libraries = jsonObj.getAsJsonArray("libraries");
+    public static List<URL> getNativeUrls(VersionMetadata json) {
+        String os = Util.getOSName();
         List<URL> urls = new ArrayList<>();
 
-        for (JsonElement entry : libraries.asList()) {
-            String name = entry.getAsJsonObject().get("name").getAsString();
-            JsonObject downloads = entry.getAsJsonObject().getAsJsonObject("downloads");
-
-            if (downloads.has("classifiers")) {
-                String os = Util.getOSName();
-                JsonObject natives = downloads.getAsJsonObject("classifiers").getAsJsonObject("natives-" + os);
+        for (VersionMetadata.Library library : json.getLibraries()) {
+            VersionMetadata.Artifact natives = library.getClassifier("natives-" + os);
 
-                if (natives != null && isAllowed(name)) {
-                    URL url = new URL(natives.get("url").getAsString());
-                    urls.add(url);
-                }
+            if (natives != null && isAllowed(library.getName())) {
+                urls.add(natives.getUrl());
             }
         }
 
@@ -118,11 +141,9 @@ public class Json {
      * Minecraft's resources (ones not already present within the JAR).
      * @param json The Minecraft version JSON.
      * @return The asset index URL.
-     * @throws IOException
      */
-    public static URL getAssetIndexUrl(File json) throws IOException {
-        JsonObject jsonObj = get(json);
-        return new URL(jsonObj.getAsJsonObject("assetIndex").get("url").getAsString());
+    public static URL getAssetIndexUrl(VersionMetadata json) {
+        return json.getAssetIndex();
     }
 
     /**
@@ -131,13 +152,26 @@ public class Json {
      * @param side The game side. Acceptable inputs are "client" and "server", though older versions may not have the server JAR in their
      *             JSONs.
      * @return The URL to the JAR file.
-     * @throws IOException
      */
-    public static URL getJarUrl(File json, String side) throws IOException {
-        JsonObject jsonObj = get(json);
-        JsonObject sideObj = jsonObj.getAsJsonObject("downloads").getAsJsonObject(side);
+    public static URL getJarUrl(VersionMetadata json, String side) {
+        return json.getDownload(side).getUrl();
+    }
 
-        return new URL(sideObj.get("url").getAsString());
+    /**
+     * Gets the SHA-1 of Minecraft's JAR file(s).
+     * @param json The Minecraft Version JSON.
+     * @param side The game side. Acceptable inputs are "client" and "server".
+     * @return The SHA-1 of the JAR file, or null if the JSON doesn't list it.
+     */
+    public static String getJarSha1(VersionMetadata json, String side) {
+        return json.getDownload(side).getSha1();
+    }
+
+    /**
+     * @return The LWJGL version used on this operating system.
+     */
+    public static String getLwjglVersion() {
+        return OperatingSystem.current().isMacOsX() ? LWJGL_MAC_VERSION : LWJGL_VERSION;
     }
 
     /**
@@ -149,6 +183,6 @@ public class Json {
             return true;
         }
 
-        return (OperatingSystem.current().isMacOsX()) ? name.contains(LWJGL_MAC_VERSION) : name.contains(LWJGL_VERSION);
+        return name.contains(getLwjglVersion());
     }
 }
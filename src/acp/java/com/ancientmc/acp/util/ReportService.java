@@ -0,0 +1,373 @@
+package com.ancientmc.acp.util;
+
+import com.ancientmc.acp.init.step.Step;
+import com.ancientmc.acp.tasks.ToolExec;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceRegistration;
+import org.gradle.api.tasks.JavaExec;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.task.TaskFailureResult;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskOperationResult;
+import org.gradle.tooling.events.task.TaskSkippedResult;
+import org.gradle.tooling.events.task.TaskSuccessResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the timings of the ACP and modtools tasks of a build, and of the steps they run, and writes them as
+ * build/reports/acp/acpReport.json and a readable acpReport.txt once the build finishes.
+ * <p>
+ * Each stage reports its wall time, CPU time, the bytes it downloaded and wrote, the number of files it wrote and the
+ * number of JVMs it forked. Task wall times come from Gradle's task events, so tasks that were up-to-date or skipped are
+ * listed as well; everything else is added by the tasks and steps themselves while they run.
+ */
+public abstract class ReportService implements BuildService<ReportService.Params>, OperationCompletionListener, AutoCloseable {
+    /**
+     * The name the service is registered under.
+     */
+    public static final String NAME = "acpReport";
+
+    /**
+     * The reported tasks that ran or were skipped, keyed by path.
+     */
+    private final Map<String, Stage> tasks = new ConcurrentHashMap<>();
+    /**
+     * The steps that ran, in execution order.
+     */
+    private final List<Stage> steps = new ArrayList<>();
+
+    /**
+     * Registers the service for the build, or gets the existing registration. The report is written into the build
+     * directory of the root project.
+     * @param project The gradle project.
+     * @param events The registry the service listens to task events through.
+     * @return The service provider.
+     */
+    public static Provider<ReportService> register(Project project, BuildEventsListenerRegistry events) {
+        boolean registered = project.getGradle().getSharedServices().getRegistrations().findByName(NAME) != null;
+        Provider<ReportService> service = project.getGradle().getSharedServices().registerIfAbsent(NAME, ReportService.class,
+                spec -> spec.getParameters().getOutputDir().set(project.getRootProject().getLayout().getBuildDirectory().dir("reports/acp")));
+        if (!registered) {
+            events.onTaskCompletion(service);
+        }
+        return service;
+    }
+
+    /**
+     * Adds a task to the report. JavaExec tasks are counted as one forked JVM, unless their tool runs in a worker.
+     * @param task The task.
+     * @param service The service provider.
+     * @param outputs The files the task writes, counted once it ran. Directories are counted recursively.
+     */
+    public static void track(Task task, Provider<ReportService> service, Object... outputs) {
+        @SuppressWarnings("unchecked")
+        BuildServiceRegistration<ReportService, Params> registration = (BuildServiceRegistration<ReportService, Params>)
+                task.getProject().getGradle().getSharedServices().getRegistrations().getByName(NAME);
+        registration.getParameters().getTasks().add(task.getPath());
+
+        String path = task.getPath();
+        FileCollection files = task.getProject().files(outputs);
+        task.usesService(service);
+        task.doLast(t -> service.get().written(path, isForked(t) ? 1 : 0, files.getFiles()));
+    }
+
+    private static boolean isForked(Task task) {
+        if (task instanceof ToolExec) {
+            return ((ToolExec) task).getEffectiveMode() == ToolExec.Mode.FORK;
+        }
+        return task instanceof JavaExec;
+    }
+
+    /**
+     * Records a step that was run through {@link Step#run(org.gradle.api.logging.Logger)}.
+     * @param task The path of the task that ran the step.
+     * @param step The step.
+     * @param executed True if the step executed, false if it was skipped.
+     * @param wall The wall time, in nanoseconds.
+     * @param cpu The CPU time of the thread that ran the step, in nanoseconds.
+     */
+    public void step(String task, Step step, boolean executed, long wall, long cpu) {
+        Stage stage = new Stage(step.getClass().getSimpleName(), task, step.getOutput() != null ? step.getOutput().getPath() : null);
+        stage.outcome = executed ? "executed" : "skipped";
+        stage.wall.set(wall);
+        stage.cpu.set(cpu);
+        stage.downloaded.set(step.getDownloaded());
+        if (executed) {
+            count(step.getOutputs(), stage);
+        }
+        synchronized (steps) {
+            steps.add(stage);
+        }
+    }
+
+    /**
+     * Adds forked JVMs to a task, for tasks that fork them on their own.
+     * @param task The task path.
+     * @param count The number of JVMs.
+     */
+    public void forked(String task, int count) {
+        getTask(task).forks.addAndGet(count);
+    }
+
+    /**
+     * Adds downloaded bytes to a task, for tasks that download without running steps.
+     * @param task The task path.
+     * @param bytes The number of bytes.
+     */
+    public void downloaded(String task, long bytes) {
+        if (bytes > 0) {
+            getTask(task).downloaded.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Counts what a task wrote, once it ran.
+     */
+    private void written(String task, int forks, Collection<File> outputs) {
+        Stage stage = getTask(task);
+        stage.forks.addAndGet(forks);
+        count(outputs, stage);
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (!(event instanceof TaskFinishEvent)) {
+            return;
+        }
+
+        TaskFinishEvent finish = (TaskFinishEvent) event;
+        if (!getParameters().getTasks().get().contains(finish.getDescriptor().getTaskPath())) {
+            return;
+        }
+
+        TaskOperationResult result = finish.getResult();
+        Stage stage = getTask(finish.getDescriptor().getTaskPath());
+        stage.wall.set(TimeUnit.MILLISECONDS.toNanos(result.getEndTime() - result.getStartTime()));
+        if (result instanceof TaskFailureResult) {
+            stage.outcome = "failed";
+        } else if (result instanceof TaskSkippedResult) {
+            stage.outcome = "skipped";
+        } else if (result instanceof TaskSuccessResult && ((TaskSuccessResult) result).isFromCache()) {
+            stage.outcome = "from-cache";
+        } else if (result instanceof TaskSuccessResult && ((TaskSuccessResult) result).isUpToDate()) {
+            stage.outcome = "up-to-date";
+        } else {
+            stage.outcome = "executed";
+        }
+    }
+
+    private Stage getTask(String path) {
+        return tasks.computeIfAbsent(path, key -> new Stage(key.substring(key.lastIndexOf(':') + 1), key, null));
+    }
+
+    /**
+     * Gets the CPU time of the current thread, for measuring steps.
+     * @return The CPU time in nanoseconds, or 0 if the JVM can't measure it.
+     */
+    public static long cpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Adds the sizes and number of files to a stage, expanding directories.
+     */
+    private static void count(Collection<File> outputs, Stage stage) {
+        for (File output : outputs) {
+            Collection<File> files = output.isDirectory() ? FileUtils.listFiles(output, null, true) : Collections.singleton(output);
+            for (File file : files) {
+                if (file.isFile()) {
+                    stage.written.addAndGet(file.length());
+                    stage.files.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the report, if any ACP task was part of the build.
+     */
+    @Override
+    public void close() throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        List<Stage> sorted = new ArrayList<>(tasks.values());
+        for (Stage task : sorted) {
+            // Steps run inside worker threads, so tasks are only given the CPU time their steps measured.
+            synchronized (steps) {
+                steps.stream().filter(step -> step.task.equals(task.task)).forEach(step -> {
+                    task.cpu.addAndGet(step.cpu.get());
+                    task.downloaded.addAndGet(step.downloaded.get());
+                    if (task.files.get() == 0) {
+                        task.written.addAndGet(step.written.get());
+                        task.files.addAndGet(step.files.get());
+                    }
+                });
+            }
+        }
+        sorted.sort(Comparator.comparingLong((Stage stage) -> stage.wall.get()).reversed());
+
+        File dir = getParameters().getOutputDir().get().getAsFile();
+        FileUtils.forceMkdir(dir);
+        try (Writer writer = Files.newBufferedWriter(new File(dir, "acpReport.json").toPath(), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(toJson(sorted), writer);
+        }
+        File text = new File(dir, "acpReport.txt");
+        Files.write(text.toPath(), toText(sorted).getBytes(StandardCharsets.UTF_8));
+        Logging.getLogger(ReportService.class).info("ACP report written to " + text.toURI());
+    }
+
+    private JsonObject toJson(List<Stage> tasks) {
+        JsonArray taskArray = new JsonArray();
+        tasks.forEach(task -> taskArray.add(task.toJson()));
+        JsonArray stepArray = new JsonArray();
+        synchronized (steps) {
+            steps.forEach(step -> stepArray.add(step.toJson()));
+        }
+
+        JsonObject json = new JsonObject();
+        json.add("tasks", taskArray);
+        json.add("steps", stepArray);
+        return json;
+    }
+
+    private String toText(List<Stage> tasks) {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        String header = "%-40s %-11s %10s %10s %12s %12s %8s %6s %12s%n";
+        String row = "%-40s %-11s %10.2f %10.2f %12s %12s %8d %6d %12s%n";
+
+        writer.printf(Locale.ROOT, header, "Task", "Outcome", "Wall (s)", "CPU (s)", "Downloaded", "Written", "Files", "Forks", "Throughput");
+        for (Stage task : tasks) {
+            writer.printf(Locale.ROOT, row, task.task, task.outcome, seconds(task.wall.get()), seconds(task.cpu.get()),
+                    bytes(task.downloaded.get()), bytes(task.written.get()), task.files.get(), task.forks.get(), task.getThroughput());
+        }
+
+        synchronized (steps) {
+            if (!steps.isEmpty()) {
+                writer.println();
+                writer.printf(Locale.ROOT, header, "Step", "Outcome", "Wall (s)", "CPU (s)", "Downloaded", "Written", "Files", "Forks", "Throughput");
+                for (Stage step : steps) {
+                    writer.printf(Locale.ROOT, row, step.task + " > " + step.name, step.outcome, seconds(step.wall.get()), seconds(step.cpu.get()),
+                            bytes(step.downloaded.get()), bytes(step.written.get()), step.files.get(), step.forks.get(), step.getThroughput());
+                }
+            }
+        }
+
+        if (!tasks.isEmpty()) {
+            writer.println();
+            writer.printf(Locale.ROOT, "Slowest stage: %s (%.2f s)%n", tasks.get(0).task, seconds(tasks.get(0).wall.get()));
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        return bytes < 1024 * 1024 ? String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0) : String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    public interface Params extends BuildServiceParameters {
+        /**
+         * The directory the report is written into.
+         */
+        DirectoryProperty getOutputDir();
+
+        /**
+         * The paths of the tasks to report.
+         */
+        SetProperty<String> getTasks();
+    }
+
+    /**
+     * A task or step of the report.
+     */
+    private static class Stage {
+        private final String name;
+        private final String task;
+        private final String output;
+        private volatile String outcome = "executed";
+        private final AtomicLong wall = new AtomicLong();
+        private final AtomicLong cpu = new AtomicLong();
+        private final AtomicLong downloaded = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicInteger forks = new AtomicInteger();
+
+        private Stage(String name, String task, String output) {
+            this.name = name;
+            this.task = task;
+            this.output = output;
+        }
+
+        /**
+         * The bytes moved (downloaded and written) per second of wall time.
+         */
+        private String getThroughput() {
+            long bytes = downloaded.get() + written.get();
+            if (wall.get() <= 0 || bytes == 0) {
+                return "-";
+            }
+            return bytes((long) (bytes / seconds(wall.get()))) + "/s";
+        }
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("name", name);
+            json.addProperty("task", task);
+            if (output != null) {
+                json.addProperty("output", output);
+            }
+            json.addProperty("outcome", outcome);
+            json.addProperty("wallMillis", TimeUnit.NANOSECONDS.toMillis(wall.get()));
+            json.addProperty("cpuMillis", TimeUnit.NANOSECONDS.toMillis(cpu.get()));
+            json.addProperty("bytesDownloaded", downloaded.get());
+            json.addProperty("bytesWritten", written.get());
+            json.addProperty("files", files.get());
+            json.addProperty("forkedJvms", forks.get());
+            return json;
+        }
+    }
+}
@@ -4,14 +4,20 @@ import net.neoforged.srgutils.IMappingFile;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.gradle.api.Project;
 import org.gradle.internal.os.OperatingSystem;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -36,6 +42,18 @@ public class Util {
         return map;
     }
 
+    /**
+     * Converts a maven path into the relative path of its file in a repository.
+     * @param path The maven path (group.sub:name:version[:classifier]).
+     * @param ext The file extension.
+     * @return The relative path, e.g. group/sub/name/version/name-version.jar.
+     */
+    public static String toMavenPath(String path, String ext) {
+        String[] split = path.split(":");
+        String file = split[1] + "-" + split[2] + (split.length > 3 ? "-" + split[3] : "") + "." + ext;
+        return split[0].replace('.', '/') + "/" + split[1] + "/" + split[2] + "/" + file;
+    }
+
     /**
      * Converts a maven path into a URL whose contents can be downloaded.
      * @param repo The repository URL.
@@ -45,10 +63,7 @@ public class Util {
      */
     public static URL toMavenUrl(String repo, String path, String ext) {
         try {
-            String[] split = path.split(":");
-            String file = split[1] + "-" + split[2] + (split.length > 3 ? "-" + split[3] : "") + "." + ext;
-            String newPath = split[0].replace('.', '/') + "/" + split[1] + "/" + split[2] + "/" + file;
-            return new URL(repo + newPath);
+            return new URL(repo + toMavenPath(path, ext));
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -109,7 +124,7 @@ public class Util {
     /**
      * Gets a shortened version of the operating system's name. This class is used in getting the native URLs,
      * as different versions for LWJGL's natives are needed depending on the operating system.
-     * @see Json#getNativeUrls(File)
+     * @see Json#getNativeUrls(VersionMetadata)
      */
     public static String getOSName() {
         OperatingSystem os = OperatingSystem.current();
@@ -126,4 +141,90 @@ public class Util {
     public static String getAncientMCMaven() {
         return "https://github.com/ancientmc/ancientmc-maven/raw/maven/";
     }
+
+    /**
+     * Gets the directory for caches shared between every ACP workspace on this machine.
+     * It lives in the Gradle user home, next to Gradle's own caches.
+     * @param project The gradle project.
+     * @return The shared cache directory.
+     */
+    public static File getCacheDir(Project project) {
+        return new File(project.getGradle().getGradleUserHomeDir(), "caches/acp/");
+    }
+
+    /**
+     * Checks whether a file exists, reading it through Gradle's providers so that the configuration cache is invalidated
+     * once the file is created or changed. Meant for the few files that decide how the project is configured.
+     * @param project The gradle project.
+     * @param file The file.
+     * @return True if the file exists.
+     */
+    public static boolean track(Project project, File file) {
+        return project.getProviders().fileContents(project.getLayout().file(project.provider(() -> file))).getAsBytes().isPresent();
+    }
+
+    /**
+     * Creates a new SHA-1 digest.
+     * @return The digest.
+     */
+    public static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM is required to support SHA-1
+        }
+    }
+
+    /**
+     * Calculates the SHA-1 hash of a file.
+     * @param file The file.
+     * @return The lowercase hexadecimal hash.
+     * @throws IOException
+     */
+    public static String sha1(File file) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[64 * 1024];
+
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Converts a digest into a lowercase hexadecimal string, keeping leading zeros.
+     * @param bytes The digest bytes.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Places a file at the target path, preferring a hard link and falling back to a copy where links aren't possible
+     * (e.g. the source is in the Gradle cache and the workspace is on a different drive).
+     * @param source The file in a shared cache.
+     * @param target The file in the workspace.
+     * @throws IOException
+     */
+    public static void link(File source, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+
+        Files.deleteIfExists(target.toPath());
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
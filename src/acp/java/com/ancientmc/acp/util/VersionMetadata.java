@@ -0,0 +1,158 @@
+package com.ancientmc.acp.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a Minecraft version JSON that ACP uses, as an immutable object. Instances are shared between projects
+ * and threads through {@link VersionMetadataService}, so the JSON is only parsed once per build.
+ * <p>
+ * ACP's jar dependency JSON has the same layout (a libraries array), so it is read into this class too.
+ */
+public final class VersionMetadata {
+    /**
+     * The URL of the asset index, or null if the JSON doesn't have one.
+     */
+    private final URL assetIndex;
+    /**
+     * The game JARs, keyed by side ("client", "server").
+     */
+    private final Map<String, Artifact> downloads;
+    /**
+     * The libraries, in the order they are listed.
+     */
+    private final List<Library> libraries;
+
+    private VersionMetadata(URL assetIndex, Map<String, Artifact> downloads, List<Library> libraries) {
+        this.assetIndex = assetIndex;
+        this.downloads = Collections.unmodifiableMap(downloads);
+        this.libraries = Collections.unmodifiableList(libraries);
+    }
+
+    /**
+     * Reads the metadata from a parsed version JSON.
+     * @param json The version JSON.
+     * @return The metadata.
+     * @throws MalformedURLException If the JSON contains an invalid URL.
+     */
+    public static VersionMetadata parse(JsonObject json) throws MalformedURLException {
+        URL assetIndex = json.has("assetIndex") ? new URL(json.getAsJsonObject("assetIndex").get("url").getAsString()) : null;
+
+        Map<String, Artifact> downloads = new LinkedHashMap<>();
+        if (json.has("downloads")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("downloads").entrySet()) {
+                downloads.put(entry.getKey(), Artifact.parse(entry.getValue().getAsJsonObject()));
+            }
+        }
+
+        List<Library> libraries = new ArrayList<>();
+        if (json.has("libraries")) {
+            for (JsonElement entry : json.getAsJsonArray("libraries")) {
+                libraries.add(Library.parse(entry.getAsJsonObject()));
+            }
+        }
+
+        return new VersionMetadata(assetIndex, downloads, libraries);
+    }
+
+    public URL getAssetIndex() {
+        return assetIndex;
+    }
+
+    /**
+     * @param side The game side, "client" or "server".
+     * @return The JAR of that side, or null if the JSON doesn't list one.
+     */
+    public Artifact getDownload(String side) {
+        return downloads.get(side);
+    }
+
+    public List<Library> getLibraries() {
+        return libraries;
+    }
+
+    /**
+     * A downloadable file and its SHA-1.
+     */
+    public static final class Artifact {
+        private final URL url;
+        private final String sha1;
+
+        Artifact(URL url, String sha1) {
+            this.url = url;
+            this.sha1 = sha1;
+        }
+
+        private static Artifact parse(JsonObject json) throws MalformedURLException {
+            return new Artifact(new URL(json.get("url").getAsString()), json.has("sha1") ? json.get("sha1").getAsString() : null);
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * @return The SHA-1 of the file, or null if the JSON doesn't list it.
+         */
+        public String getSha1() {
+            return sha1;
+        }
+    }
+
+    /**
+     * A library entry, with the native JARs it lists (if any).
+     */
+    public static final class Library {
+        /**
+         * The maven path of the library (group.sub:name:version).
+         */
+        private final String name;
+        /**
+         * The classified JARs of the library, keyed by classifier (e.g. "natives-linux").
+         */
+        private final Map<String, Artifact> classifiers;
+
+        private Library(String name, Map<String, Artifact> classifiers) {
+            this.name = name;
+            this.classifiers = Collections.unmodifiableMap(classifiers);
+        }
+
+        private static Library parse(JsonObject json) throws MalformedURLException {
+            Map<String, Artifact> classifiers = new LinkedHashMap<>();
+            JsonObject downloads = json.getAsJsonObject("downloads");
+            if (downloads != null && downloads.has("classifiers")) {
+                for (Map.Entry<String, JsonElement> entry : downloads.getAsJsonObject("classifiers").entrySet()) {
+                    classifiers.put(entry.getKey(), Artifact.parse(entry.getValue().getAsJsonObject()));
+                }
+            }
+            return new Library(json.get("name").getAsString(), classifiers);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param classifier The classifier, e.g. "natives-linux".
+         * @return The JAR with that classifier, or null if the library has none.
+         */
+        public Artifact getClassifier(String classifier) {
+            return classifiers.get(classifier);
+        }
+
+        /**
+         * @return True if the library lists classified JARs, e.g. natives.
+         */
+        public boolean hasClassifiers() {
+            return !classifiers.isEmpty();
+        }
+    }
+}
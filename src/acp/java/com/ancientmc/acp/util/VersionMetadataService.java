@@ -0,0 +1,66 @@
+package com.ancientmc.acp.util;
+
+import com.google.gson.JsonParser;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses version JSONs once per build. The parsed metadata is keyed by the SHA-1 of the file's contents rather than its
+ * path, so every project of a multi-project build shares one copy of the same JSON, and a file that changed on disk is
+ * never served stale.
+ */
+public abstract class VersionMetadataService implements BuildService<BuildServiceParameters.None> {
+    /**
+     * The name the service is registered under.
+     */
+    public static final String NAME = "acpVersionMetadata";
+
+    /**
+     * The parsed metadata, keyed by the SHA-1 of the JSON it was parsed from.
+     */
+    private final ConcurrentMap<String, VersionMetadata> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the service for the build, or gets the existing registration.
+     * @param project The gradle project.
+     * @return The service provider.
+     */
+    public static Provider<VersionMetadataService> register(Project project) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, VersionMetadataService.class, spec -> { });
+    }
+
+    /**
+     * Gets the metadata of a version JSON, parsing it only if no file with the same contents was parsed before.
+     * @param json The version JSON.
+     * @return The metadata.
+     * @throws IOException
+     */
+    public VersionMetadata get(File json) throws IOException {
+        byte[] bytes = Files.readAllBytes(json.toPath());
+        String hash = Util.toHex(Util.sha1().digest(bytes));
+
+        VersionMetadata metadata = cache.get(hash);
+        if (metadata == null) {
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+                metadata = VersionMetadata.parse(JsonParser.parseReader(reader).getAsJsonObject());
+            }
+            VersionMetadata existing = cache.putIfAbsent(hash, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ancientmc.acp.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR implementation of {@link Events}. Compiled for Java 11 in a source set of its own, and only loaded if the
+ * running JVM can run it.
+ */
+class JfrEvents implements Events.Factory {
+
+    @Override
+    public Events.Span step(String task, String step, String output) {
+        StepEvent event = new StepEvent();
+        event.task = task;
+        event.step = step;
+        event.output = output;
+        event.begin();
+        return event::commit;
+    }
+
+    @Override
+    public Events.Span download(String url) {
+        DownloadEvent event = new DownloadEvent();
+        event.url = url;
+        event.begin();
+        return new Events.Span() {
+            @Override
+            public void setBytes(long bytes) {
+                event.bytes = bytes;
+            }
+
+            @Override
+            public void close() {
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public Events.Span tool(String task, String tool) {
+        ToolEvent event = new ToolEvent();
+        event.task = task;
+        event.tool = tool;
+        event.begin();
+        return event::commit;
+    }
+
+    @Override
+    public Events.Span phase(String task, String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.task = task;
+        event.phase = phase;
+        event.begin();
+        return new Events.Span() {
+            @Override
+            public void setFiles(long files) {
+                event.files = files;
+            }
+
+            @Override
+            public void close() {
+                event.commit();
+            }
+        };
+    }
+
+    @Name("com.ancientmc.acp.Step")
+    @Label("ACP Step")
+    @Category("ACP")
+    @Description("A step of an ACP setup task")
+    static class StepEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Step")
+        String step;
+
+        @Label("Output")
+        String output;
+    }
+
+    @Name("com.ancientmc.acp.Download")
+    @Label("ACP Download")
+    @Category("ACP")
+    @Description("A download through the shared download service")
+    static class DownloadEvent extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Bytes Transferred")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.ancientmc.acp.Tool")
+    @Label("ACP Tool")
+    @Category("ACP")
+    @Description("A run of a decompilation or modding tool")
+    static class ToolEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Tool")
+        String tool;
+    }
+
+    @Name("com.ancientmc.acp.Phase")
+    @Label("ACP Phase")
+    @Category("ACP")
+    @Description("A phase of an ACP or modtools task")
+    static class PhaseEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Files")
+        long files;
+    }
+}
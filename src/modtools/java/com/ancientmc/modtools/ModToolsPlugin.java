@@ -1,7 +1,11 @@
 package com.ancientmc.modtools;
 
+import com.ancientmc.acp.AcpExtension;
+import com.ancientmc.acp.AcpLayout;
+import com.ancientmc.acp.download.DownloadService;
 import com.ancientmc.acp.tasks.MakeHashes;
-import com.ancientmc.acp.util.Paths;
+import com.ancientmc.acp.tasks.ToolExec;
+import com.ancientmc.acp.util.ReportService;
 import com.ancientmc.modtools.tasks.DownloadModLoader;
 import com.ancientmc.modtools.tasks.MakeArchives;
 import com.ancientmc.modtools.tasks.MakeReobfSrg;
@@ -11,14 +15,19 @@ import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Copy;
-import org.gradle.api.tasks.JavaExec;
 import org.gradle.api.tasks.TaskProvider;
+import org.gradle.build.event.BuildEventsListenerRegistry;
 
+import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 
-public class ModToolsPlugin implements Plugin<Project> {
+public abstract class ModToolsPlugin implements Plugin<Project> {
+
+    @Inject
+    protected abstract BuildEventsListenerRegistry getEventsListenerRegistry();
 
     @Override
     public void apply(Project project) {
@@ -28,82 +37,106 @@ public class ModToolsPlugin implements Plugin<Project> {
         project.getPluginManager().apply(JavaPlugin.class);
 
         TaskProvider<DownloadModLoader> downloadModLoader = project.getTasks().register("downloadModLoader", DownloadModLoader.class);
-        TaskProvider<JavaExec> makeDiffPatches = project.getTasks().register("makeDiffPatches", JavaExec.class);
+        TaskProvider<ToolExec> makeDiffPatches = project.getTasks().register("makeDiffPatches", ToolExec.class);
         TaskProvider<MakeHashes> makeModdedHashes = project.getTasks().register("makeModdedHashes", MakeHashes.class);
         TaskProvider<MakeReobfSrg> makeReobfSrg = project.getTasks().register("makeReobfSrg", MakeReobfSrg.class);
-        TaskProvider<JavaExec> reobfJar = project.getTasks().register("reobfJar", JavaExec.class);
+        TaskProvider<ToolExec> reobfJar = project.getTasks().register("reobfJar", ToolExec.class);
         TaskProvider<Copy> extractReobfClasses = project.getTasks().register("extractReobfClasses", Copy.class);
         TaskProvider<MakeArchives> makeArchives = project.getTasks().register("makeArchives", MakeArchives.class);
 
+        AcpExtension acp = project.getExtensions().findByType(AcpExtension.class);
+        AcpLayout layout = acp != null ? acp.getLayout() : new AcpLayout(project, minecraftVersion);
+        Provider<DownloadService> downloads = DownloadService.register(project, acp);
+        Provider<ReportService> report = ReportService.register(project, getEventsListenerRegistry());
         Configuration diffpatch = project.getConfigurations().getByName("diffpatch");
         Configuration specialsource = project.getConfigurations().create("specialsource");
 
-        project.afterEvaluate(proj -> {
-            String diffPatches = extension.getDiffPatchesDir().get();
-            try {
-                if (!proj.file(diffPatches).exists()) {
-                    FileUtils.forceMkdir(proj.file(diffPatches));
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-
         downloadModLoader.configure(task -> {
             String loaderType = extension.getLoader().get();
             task.setGroup("modtools");
             task.getVersion().set(minecraftVersion);
-            task.getOutputDir().set(project.file(Paths.DIR_MODPATCHES));
+            task.getOutputDir().set(layout.getModPatchesDir());
             task.getModLoader().set(loaderType);
+            task.getDownloadService().set(downloads);
+            if (acp != null) {
+                task.getMirrors().set(acp.getMirrors().getMirrors());
+            }
+            task.usesService(downloads);
+            task.getReportService().set(report);
+            ReportService.track(task, report, layout.getModPatchesDir());
         });
 
         makeDiffPatches.configure(task -> {
             String diffPatches = extension.getDiffPatchesDir().get();
             task.setGroup("modtools");
+            task.getTool().set("diffpatch");
+            if (acp != null) {
+                task.getMode().set(acp.getToolModeValue());
+            }
             task.getMainClass().set("codechicken.diffpatch.DiffPatch");
             task.setClasspath(project.files(diffpatch));
-            task.args("--diff", Paths.DIR_ORIGINAL_SRC, Paths.DIR_SRC, "--output", diffPatches);
+            task.args("--diff", AcpLayout.path(layout.getOriginalSrcDir()), AcpLayout.path(layout.getSrcDir()), "--output", diffPatches);
             task.getLogging().captureStandardOutput(LogLevel.DEBUG);
             task.setIgnoreExitValue(true);
+            // Created when the task runs rather than while configuring the project.
+            File diffPatchesDir = project.file(diffPatches);
+            task.doFirst(t -> {
+                try {
+                    FileUtils.forceMkdir(diffPatchesDir);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            ReportService.track(task, report, diffPatchesDir);
         });
 
         makeReobfSrg.configure(task -> {
             task.setGroup("modtools");
-            task.getInputSrg().set(project.file(Paths.SRG));
-            task.getOutputSrg().set(project.file(Paths.REOBF_SRG));
+            task.getInputSrg().set(layout.getSrg());
+            task.getOutputSrg().set(layout.getReobfSrg());
+            ReportService.track(task, report, layout.getReobfSrg());
         });
 
         reobfJar.configure(task -> {
             task.setGroup("modtools");
+            task.getTool().set("specialsource");
+            if (acp != null) {
+                task.getMode().set(acp.getToolModeValue());
+            }
             task.dependsOn(":jar", makeReobfSrg);
             task.getMainClass().set("net.md_5.specialsource.SpecialSource");
             task.setClasspath(project.files(specialsource));
-            task.args("--in-jar", Paths.INTERM_JAR, "--out-jar", Paths.REOBF_JAR, "--srg-in", Paths.REOBF_SRG, "--reverse");
+            task.args("--in-jar", AcpLayout.path(layout.getIntermJar()), "--out-jar", AcpLayout.path(layout.getReobfJar()),
+                    "--srg-in", AcpLayout.path(layout.getReobfSrg()), "--reverse");
             task.getLogging().captureStandardError(LogLevel.DEBUG);
+            ReportService.track(task, report, layout.getReobfJar());
         });
 
         extractReobfClasses.configure(task -> {
             task.setGroup("modtools");
             task.dependsOn(reobfJar);
-            task.from(project.zipTree(project.file(Paths.REOBF_JAR))).include("*.class", "net/");
-            task.into(Paths.DIR_REOBF_CLASSES);
+            task.from(project.zipTree(layout.getReobfJar())).include("*.class", "net/");
+            task.into(layout.getReobfClassesDir());
+            ReportService.track(task, report, layout.getReobfClassesDir());
         });
 
         makeModdedHashes.configure(task -> {
             task.setGroup("modtools");
             task.dependsOn(extractReobfClasses);
-            task.getClassesDirectory().set(project.file(Paths.DIR_MODDED_CLASSES));
-            task.getOutput().set(new File("build/modding/hashes/modded.md5"));
+            task.getClassesDirectory().fileProvider(layout.getModdedClassesDir().getAsFile());
+            task.getOutput().set(layout.getHashesDir().file("modded.md5"));
+            ReportService.track(task, report, layout.getHashesDir().file("modded.md5"));
         });
 
         makeArchives.configure(task -> {
             String name = extension.getModName().get();
             task.setGroup("modtools");
             task.dependsOn(makeModdedHashes);
-            task.getObfuscatedClassDirectory().set(project.file(Paths.DIR_REOBF_CLASSES));
-            task.getHashDirectory().set(project.file("build/modding/hashes/"));
-            task.getSrg().set(project.file(Paths.SRG));
+            task.getObfuscatedClassDirectory().set(layout.getReobfClassesDir());
+            task.getHashDirectory().set(layout.getHashesDir());
+            task.getSrg().set(layout.getSrg());
             task.getArchiveDirectory().set(project.file("build/modding/archives/" + name + "/"));
+            ReportService.track(task, report, task.getArchiveDirectory());
         });
     }
 }
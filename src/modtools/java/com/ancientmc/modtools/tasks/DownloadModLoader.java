@@ -1,11 +1,18 @@
 package com.ancientmc.modtools.tasks;
 
+import com.ancientmc.acp.download.CacheMetadata;
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.Downloads;
+import com.ancientmc.acp.download.Mirrors;
+import com.ancientmc.acp.util.ReportService;
 import com.ancientmc.acp.util.Util;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
 
@@ -17,9 +24,15 @@ import java.net.URL;
 /**
  * Downloads the LZMA for the ModLoader into a specified folder. The LZMA will get injected later
  * via the injectModPatches task during setup.
+ * The task never counts as up-to-date; instead, an existing LZMA is revalidated with a conditional request, which costs
+ * no transfer if it hasn't changed on the server.
  */
 public abstract class DownloadModLoader extends DefaultTask {
 
+    public DownloadModLoader() {
+        getOutputs().upToDateWhen(task -> false);
+    }
+
     @TaskAction
     void exec() {
         try {
@@ -28,11 +41,22 @@ public abstract class DownloadModLoader extends DefaultTask {
             File output = getOutputDir().get().getAsFile();
             String repo = Util.getAncientMCMaven();
             URL url = getURL(repo, version, loader);
+            if (getMirrors().isPresent()) {
+                url = getMirrors().get().resolve(url, getDownloadService().get());
+            }
 
             if (!output.exists()) {
                 FileUtils.forceMkdir(output);
             }
-            FileUtils.copyURLToFile(url, getProject().file(output.getPath() + "/modloader.lzma"));
+            File lzma = new File(output, "modloader.lzma");
+            CacheMetadata meta = CacheMetadata.of(lzma);
+            long bytes = getDownloadService().get().downloadAtomic(url, lzma, null, meta);
+            if (bytes == Downloads.NOT_MODIFIED) {
+                getLogger().lifecycle("ModLoader is up to date");
+            } else if (getReportService().isPresent()) {
+                getReportService().get().downloaded(getPath(), bytes);
+            }
+            meta.save();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -81,6 +105,25 @@ public abstract class DownloadModLoader extends DefaultTask {
     @Input
     public abstract Property<String> getModLoader();
 
+    /**
+     * The shared download service.
+     */
+    @Internal
+    public abstract Property<DownloadService> getDownloadService();
+
+    /**
+     * The mirrors configured in the ACP extension, if any.
+     */
+    @Input
+    @Optional
+    public abstract Property<Mirrors> getMirrors();
+
+    /**
+     * The build report the download is counted in. Optional.
+     */
+    @Internal
+    public abstract Property<ReportService> getReportService();
+
     /**
      * The output directory for LZMA mod patches (cfg\modpatches).
      */
@@ -1,5 +1,6 @@
 package com.ancientmc.modtools.tasks;
 
+import com.ancientmc.acp.util.Events;
 import com.ancientmc.acp.util.Util;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
@@ -20,6 +21,7 @@ import java.util.Map;
 
 /**
  * Makes two archives (ZIP and TAR) of mod classes and/or modified Minecraft classes for distribution.
+ * Comparing the hashes and compressing the classes are flight recorder events of their own, see {@link Events}.
  */
 public abstract class MakeArchives extends DefaultTask {
     @TaskAction
@@ -30,27 +32,33 @@ public abstract class MakeArchives extends DefaultTask {
         File archiveDirectory = getArchiveDirectory().get().getAsFile();
 
         try {
-            // Retrieve hash maps.
-            Map<String, String> originalMap = getHashMap(new File(hashDirectory, "original.md5"));
-            Map<String, String> moddedMap = getHashMap(new File(hashDirectory, "modded.md5"));
-            Map<String, String> classMap = Util.getClassMap(srg);
-
-            // Remove ACP start class from map.
-            moddedMap.remove("acp/client/Start");
             List<File> moddedClasses = new ArrayList<>();
+            try (Events.Span span = Events.phase(getPath(), "compare")) {
+                // Retrieve hash maps.
+                Map<String, String> originalMap = getHashMap(new File(hashDirectory, "original.md5"));
+                Map<String, String> moddedMap = getHashMap(new File(hashDirectory, "modded.md5"));
+                Map<String, String> classMap = Util.getClassMap(srg);
+
+                // Remove ACP start class from map.
+                moddedMap.remove("acp/client/Start");
 
-            moddedMap.forEach((name, hash) -> {
-                if (!originalMap.containsValue(hash)) {
-                    // Get the class file names without packages.
-                    String strippedName = name.substring(name.lastIndexOf('/') + 1);
+                moddedMap.forEach((name, hash) -> {
+                    if (!originalMap.containsValue(hash)) {
+                        // Get the class file names without packages.
+                        String strippedName = name.substring(name.lastIndexOf('/') + 1);
 
-                    String className = classMap.containsValue(name) ? getObfName(name, classMap) : strippedName;
-                    File moddedClass = getProject().file(obfDirectory.getPath() + "/" + className + ".class");
-                    moddedClasses.add(moddedClass);
-                }
-            });
+                        String className = classMap.containsValue(name) ? getObfName(name, classMap) : strippedName;
+                        File moddedClass = new File(obfDirectory, className + ".class");
+                        moddedClasses.add(moddedClass);
+                    }
+                });
+                span.setFiles(moddedMap.size());
+            }
 
-            Util.compress(moddedClasses, archiveDirectory);
+            try (Events.Span span = Events.phase(getPath(), "compress")) {
+                Util.compress(moddedClasses, archiveDirectory);
+                span.setFiles(moddedClasses.size());
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1,6 +1,5 @@
 package com.ancientmc.modtools.tasks;
 
-import com.ancientmc.acp.util.Paths;
 import net.neoforged.srgutils.IMappingFile;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
@@ -27,7 +26,7 @@ public abstract class MakeReobfSrg extends DefaultTask {
         try {
             File input = getInputSrg().get().getAsFile();
             File output = getOutputSrg().get().getAsFile();
-            File temp = getProject().file(Paths.DIR_TEMP + "temp.srg");
+            File temp = new File(getTemporaryDir(), "temp.srg");
 
             IMappingFile.load(input).write(temp.toPath(), IMappingFile.Format.SRG, false);
 
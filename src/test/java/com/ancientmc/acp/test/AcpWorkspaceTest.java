@@ -1,6 +1,10 @@
 package com.ancientmc.acp.test;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.gradle.testkit.runner.BuildResult;
@@ -11,12 +15,21 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.gradle.testkit.runner.TaskOutcome.SUCCESS;
 import static org.gradle.testkit.runner.TaskOutcome.UP_TO_DATE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AcpWorkspaceTest {
@@ -73,6 +86,105 @@ public class AcpWorkspaceTest {
         doTest("exportRuby", "makeDiffPatches", "makeArchives");
     }
 
+    /** Sets up a modded workspace and exports its archives twice with the configuration cache, and checks that the
+     * second run of each reuses its cache entry and still writes the timing report. Covers the tool tasks of the
+     * decompilation and a modtools task. **/
+    @Test public void testConfigurationCache() throws IOException {
+        doTest("configurationCacheClean", "clean", "downloadModLoader");
+        System.out.println("Running test configurationCache");
+        // Each requested task, and a task it runs that is listed in the report.
+        Map<String, String> tasks = new TreeMap<>();
+        tasks.put("decompile", ":decompileJar");
+        tasks.put("makeArchives", ":makeArchives");
+        for (int i = 0; i < 2; i++) {
+            for (Map.Entry<String, String> task : tasks.entrySet()) {
+                BuildResult result = GradleRunner.create()
+                        .withProjectDir(testDir)
+                        .withPluginClasspath()
+                        .withArguments("--configuration-cache", task.getKey())
+                        .build();
+                assertTrue(result.getOutput().contains("BUILD SUCCESSFUL"));
+                if (i == 1) {
+                    assertTrue(result.getOutput().contains("Reusing configuration cache."));
+                }
+                File report = new File(testDir, "build/reports/acp/acpReport.txt");
+                assertTrue(FileUtils.readFileToString(report, StandardCharsets.UTF_8).contains(task.getValue()));
+            }
+        }
+        System.out.println("Test configurationCache successful");
+    }
+
+    /** Decompiles the Minecraft JAR, the largest JAR of the setup, with 1, 2 and 4 shards. Every sharded run must give
+     * the same bytes for every source as a single shard, and fork one fernflower JVM per shard. How much faster the
+     * shards are depends on the machine, so that is only printed, not checked. **/
+    @Test public void testDecompileScaling() throws IOException {
+        doTest("decompileScaling", "clean", "deobfJar");
+        System.out.println("Running test decompileScaling");
+
+        File finalJar = new File(testDir, "cfg/temp/a1.2.6-final.jar");
+        File report = new File(testDir, "build/reports/acp/acpReport.json");
+        Map<String, byte[]> baseline = null;
+        for (int shards : Arrays.asList(1, 2, 4)) {
+            long start = System.nanoTime();
+            BuildResult result = GradleRunner.create()
+                    .withProjectDir(testDir)
+                    .withPluginClasspath()
+                    .withArguments("decompileJar", "--rerun", "-x", "deobfJar", "-Pacp.decompileShards=" + shards)
+                    .build();
+            long time = System.nanoTime() - start;
+            assertTrue(result.getOutput().contains("BUILD SUCCESSFUL"));
+            assertEquals(shards, getForks(report, ":decompileJar"));
+
+            Map<String, byte[]> sources = readEntries(finalJar);
+            if (baseline == null) {
+                baseline = sources;
+            } else {
+                assertEquals(baseline.keySet(), sources.keySet());
+                for (Map.Entry<String, byte[]> entry : baseline.entrySet()) {
+                    assertArrayEquals(entry.getValue(), sources.get(entry.getKey()), entry.getKey());
+                }
+            }
+            System.out.printf("> %d shard(s): %.2fs%n", shards, time / 1e9);
+        }
+        System.out.println("Test decompileScaling successful");
+    }
+
+    /**
+     * Gets the number of JVMs a task forked, from the JSON report.
+     * @param report The JSON report.
+     * @param task The path of the task.
+     * @return The number of forked JVMs.
+     * @throws IOException
+     */
+    public int getForks(File report, String task) throws IOException {
+        JsonObject json = JsonParser.parseString(FileUtils.readFileToString(report, StandardCharsets.UTF_8)).getAsJsonObject();
+        for (JsonElement element : json.getAsJsonArray("tasks")) {
+            JsonObject stage = element.getAsJsonObject();
+            if (stage.get("task").getAsString().equals(task)) {
+                return stage.get("forkedJvms").getAsInt();
+            }
+        }
+        throw new IllegalStateException(task + " isn't in the report");
+    }
+
+    /**
+     * Reads the entries of a JAR.
+     * @param jar The JAR.
+     * @return The contents of the entries, keyed by name.
+     * @throws IOException
+     */
+    public Map<String, byte[]> readEntries(File jar) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), IOUtils.toByteArray(in));
+                }
+            }
+        }
+        return entries;
+    }
+
     /**
      * Runs a test.
      * @param args Gradle args, including tasks being run.
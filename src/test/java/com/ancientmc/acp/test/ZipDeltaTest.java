@@ -0,0 +1,142 @@
+package com.ancientmc.acp.test;
+
+import com.ancientmc.acp.download.DownloadService;
+import com.ancientmc.acp.download.ZipDelta;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Syncs a directory with zips built by the test, read through file: URLs.
+ */
+public class ZipDeltaTest {
+    @TempDir
+    File temp;
+
+    /**
+     * The directory the zips are extracted into.
+     */
+    private File dir;
+
+    private DownloadService downloads;
+
+    @BeforeEach
+    public void setup() {
+        dir = new File(temp, "out/");
+        Project project = ProjectBuilder.builder().withProjectDir(new File(temp, "project/")).build();
+        downloads = DownloadService.register(project, null).get();
+    }
+
+    /**
+     * Only the changed entries are fetched, in either compression method, and the removed entry is deleted. Names
+     * containing ".." that stay inside the directory are fine.
+     * @throws IOException
+     */
+    @Test
+    public void testSync() throws IOException {
+        Map<String, String> old = new LinkedHashMap<>();
+        old.put("same..txt", "unchanged");
+        old.put("changed.txt", "old");
+        old.put("stored/data.bin", "old stored");
+        old.put("removed.txt", "gone");
+        File oldZip = zip("old.zip", old, "stored/data.bin");
+        extract(oldZip);
+
+        Map<String, String> current = new LinkedHashMap<>();
+        current.put("same..txt", "unchanged");
+        current.put("changed.txt", "new, and longer");
+        current.put("stored/data.bin", "new stored");
+        File newZip = zip("new.zip", current, "stored/data.bin");
+
+        ZipDelta.Result result = ZipDelta.sync(newZip.toURI().toURL(), dir, old.keySet(), downloads);
+        assertEquals(Arrays.asList("same..txt", "changed.txt", "stored/data.bin"), result.entries);
+        assertEquals(2, result.changed);
+        assertEquals(1, result.removed);
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            assertEquals(entry.getValue(), FileUtils.readFileToString(new File(dir, entry.getKey()), StandardCharsets.UTF_8));
+        }
+        assertFalse(new File(dir, "removed.txt").exists());
+
+        // Nothing left to fetch.
+        assertEquals(0, ZipDelta.sync(newZip.toURI().toURL(), dir, result.entries, downloads).changed);
+    }
+
+    /**
+     * Entries that would be written outside the directory are rejected before anything is written.
+     * @throws IOException
+     */
+    @Test
+    public void testZipSlip() throws IOException {
+        File zip = zip("evil.zip", Collections.singletonMap("../evil.txt", "evil"));
+        assertThrows(IOException.class, () -> ZipDelta.sync(zip.toURI().toURL(), dir, null, downloads));
+        assertFalse(new File(temp, "evil.txt").exists());
+    }
+
+    /**
+     * Builds a zip in the temporary directory.
+     * @param name The name of the zip.
+     * @param entries The contents of the entries, keyed by name.
+     * @param stored The entries written without compression.
+     * @return The zip.
+     * @throws IOException
+     */
+    private File zip(String name, Map<String, String> entries, String... stored) throws IOException {
+        List<String> storedNames = Arrays.asList(stored);
+        File file = new File(temp, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                byte[] bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (storedNames.contains(entry.getKey())) {
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(bytes.length);
+                    zipEntry.setCompressedSize(bytes.length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(zipEntry);
+                out.write(bytes);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Extracts a zip into the directory, like a full download would.
+     * @param zip The zip.
+     * @throws IOException
+     */
+    private void extract(File zip) throws IOException {
+        try (ZipFile file = new ZipFile(zip)) {
+            for (ZipEntry entry : Collections.list(file.entries())) {
+                try (InputStream in = file.getInputStream(entry)) {
+                    FileUtils.copyInputStreamToFile(in, new File(dir, entry.getName()));
+                }
+            }
+        }
+    }
+}